@@ -0,0 +1,688 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+import edu.byu.cet.founderdirectory.service.DeltaReader;
+
+/**
+ * Times the provider's fast paths against the slower ways we used to do the same work,
+ * on a directory of FOUNDER_COUNT made-up founders, or more where a case says so.  Each
+ * case logs its numbers under the tag below and checks that both ways give the same
+ * answer; run it on a device with "adb logcat -s FounderProviderBenchmark" to read them.
+ */
+public class FounderProviderBenchmark extends ProviderTestCase2<FounderProvider> {
+    private static final String TAG = FounderProviderBenchmark.class.getSimpleName();
+    private static final String DATABASE_NAME = "founders.db";
+
+    /**
+     * Server version our made-up snapshots hold.
+     */
+    private static final int SNAPSHOT_VERSION = 100;
+
+    private static final int FOUNDER_COUNT = 2000;
+
+    /**
+     * How many founders sync writes at once, as in SyncService.
+     */
+    private static final int SYNC_BATCH_SIZE = 200;
+    private static final int RUNS = 5;
+
+    /**
+     * How many records the sync in the upsert case brings down.
+     */
+    private static final int DELTA_COUNT = 10000;
+
+    /**
+     * Most founders to build and write at once when filling a larger directory.
+     */
+    private static final int FILL_BATCH = 5000;
+
+    /**
+     * A word that only every MARKED_EVERY'th founder's biography contains.
+     */
+    private static final String MARKER = "zephyrologist";
+    private static final int MARKED_EVERY = 50;
+
+    private static final String FILLER = "founded a company that grew out of a class project and now " +
+            "employs engineers designers and sales staff across several states while mentoring " +
+            "students who want to start companies of their own";
+
+    public FounderProviderBenchmark() {
+        super(FounderProvider.class, Contract.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        upsert(founders(FOUNDER_COUNT, 1));
+    }
+
+    public void testSearchAgainstLikeAt10000() {
+        searchAgainstLike(10000);
+    }
+
+    public void testSearchAgainstLikeAt100000() {
+        searchAgainstLike(100000);
+    }
+
+    /**
+     * Time a search against the LIKE scan it replaced, on a directory of a given size.
+     *
+     * @param rows How many founders the directory holds
+     */
+    private void searchAgainstLike(int rows) {
+        final int[] counts = new int[2];
+
+        fill(rows);
+
+        long search = time(new Runnable() {
+            @Override
+            public void run() {
+                counts[0] = count(getProvider().query(Contract.searchUri(MARKER.substring(0, 10)),
+                        null, null, null, null));
+            }
+        });
+        long like = time(new Runnable() {
+            @Override
+            public void run() {
+                String pattern = "%" + MARKER.substring(0, 10) + "%";
+
+                counts[1] = count(getProvider().query(Contract.CONTENT_URI, new String[] { Contract._ID },
+                        Contract.PREFERRED_FULL_NAME + " LIKE ? OR " + Contract.ORGANIZATION_NAME +
+                                " LIKE ? OR " + Contract.EXPERTISE + " LIKE ? OR " + Contract.BIOGRAPHY +
+                                " LIKE ?", new String[] { pattern, pattern, pattern, pattern }, null));
+            }
+        });
+
+        report("search of " + rows, search, "LIKE", like);
+        assertEquals(rows / MARKED_EVERY, counts[0]);
+        assertEquals(counts[1], counts[0]);
+    }
+
+    public void testSummaryAgainstFullRows() {
+        final int[] counts = new int[2];
+
+        long summary = time(new Runnable() {
+            @Override
+            public void run() {
+                counts[0] = count(getProvider().query(Contract.SUMMARY_URI, null, null, null, Contract.SORT_KEY));
+            }
+        });
+        long full = time(new Runnable() {
+            @Override
+            public void run() {
+                counts[1] = count(getProvider().query(Contract.CONTENT_URI, null, null, null, Contract.SORT_KEY));
+            }
+        });
+
+        report("summary", summary, "full rows", full);
+
+        // The time is mostly how often the cursor has to go back to SQLite for another window.
+        int summaryWindows = windows(getProvider().query(Contract.SUMMARY_URI, null, null, null, Contract.SORT_KEY));
+        int fullWindows = windows(getProvider().query(Contract.CONTENT_URI, null, null, null, Contract.SORT_KEY));
+
+        Log.i(TAG, "summary " + summaryWindows + " windows, full rows " + fullWindows + " windows");
+        assertEquals(FOUNDER_COUNT, counts[0]);
+        assertEquals(counts[1], counts[0]);
+        assertTrue(summaryWindows <= fullWindows);
+    }
+
+    public void testReadsDuringSyncWrite() throws InterruptedException {
+        final ArrayList<ContentValues> founders = founders(FOUNDER_COUNT, 2);
+        final long[] write = new long[1];
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+
+                upsert(founders);
+                write[0] = (System.nanoTime() - start) / 1000;
+            }
+        });
+        long slowest = 0;
+        int reads = 0;
+
+        writer.start();
+
+        // Keep reading the list, as the list screen would, for as long as the sync's
+        // one big write transaction runs.
+        while (writer.isAlive()) {
+            long start = System.nanoTime();
+
+            count(getProvider().query(Contract.SUMMARY_URI, null, null, null, Contract.SORT_KEY));
+            slowest = Math.max(slowest, (System.nanoTime() - start) / 1000);
+            ++reads;
+        }
+
+        writer.join();
+        Log.i(TAG, "write " + write[0] + " us, " + reads + " reads during it, slowest " + slowest + " us");
+
+        // Without WAL a read waits for the whole write to commit.
+        if (reads > 1) {
+            assertTrue("slowest read " + slowest + " us, write " + write[0] + " us", slowest < write[0]);
+        }
+    }
+
+    public void testUpsertAgainstUpdateThenInsert() {
+        // A sync of DELTA_COUNT records that changes every founder we have and brings in a
+        // quarter as many new.
+        final int existing = DELTA_COUNT * 4 / 5;
+        final ArrayList<ContentValues> founders = founders(DELTA_COUNT, 2);
+        Runnable removeNew = new Runnable() {
+            @Override
+            public void run() {
+                getProvider().delete(Contract.CONTENT_URI, Contract._ID + " > ?",
+                        new String[] { Integer.toString(existing) });
+            }
+        };
+
+        fill(existing);
+
+        long upsert = time(removeNew, new Runnable() {
+            @Override
+            public void run() {
+                upsert(founders);
+            }
+        });
+        assertEquals(founders.size(), count(getProvider().query(Contract.SUMMARY_URI, null, null, null, null)));
+
+        long updateThenInsert = time(removeNew, new Runnable() {
+            @Override
+            public void run() {
+                updateThenInsert(founders);
+            }
+        });
+        assertEquals(founders.size(), count(getProvider().query(Contract.SUMMARY_URI, null, null, null, null)));
+
+        report("upsert", upsert, "update then insert", updateThenInsert);
+    }
+
+    public void testHotScanAgainstWideScan() {
+        final SQLiteDatabase database = getMockContext().openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        final String columns = TextUtils.join(", ", Contract.summaryFields());
+        final int[] counts = new int[2];
+
+        try {
+            // The founder table as it was before the cold columns moved out: every field in one row.
+            database.execSQL("DROP TABLE IF EXISTS founder_wide");
+            database.execSQL("CREATE TABLE founder_wide AS SELECT * FROM " + Contract.FOUNDER_RECORD);
+
+            long hot = time(new Runnable() {
+                @Override
+                public void run() {
+                    counts[0] = count(database.rawQuery("SELECT " + columns + " FROM " + Contract.FOUNDER, null));
+                }
+            });
+            long wide = time(new Runnable() {
+                @Override
+                public void run() {
+                    counts[1] = count(database.rawQuery("SELECT " + columns + " FROM founder_wide", null));
+                }
+            });
+
+            report("hot scan", hot, "wide scan", wide);
+            assertEquals(FOUNDER_COUNT, counts[0]);
+            assertEquals(counts[1], counts[0]);
+        } finally {
+            database.execSQL("DROP TABLE IF EXISTS founder_wide");
+            database.close();
+        }
+    }
+
+    public void testSnapshotImportAgainstDelta() throws IOException, JSONException {
+        final ArrayList<ContentValues> founders = founders(FOUNDER_COUNT, 1);
+        final File snapshot = new File(getContext().getCacheDir(), "benchmark_snapshot.db.gz");
+        final int[] imported = new int[1];
+        Runnable clear = new Runnable() {
+            @Override
+            public void run() {
+                getProvider().delete(Contract.CONTENT_URI, null, null);
+                setServerVersion(0);
+            }
+        };
+
+        try {
+            setServerVersion(SNAPSHOT_VERSION);
+            writeSnapshot(snapshot);
+
+            long snapshotImport = time(clear, new Runnable() {
+                @Override
+                public void run() {
+                    imported[0] = getProvider().call(Contract.METHOD_IMPORT_SNAPSHOT, snapshot.getPath(), null)
+                            .getInt(Contract.EXTRA_COUNT);
+                }
+            });
+            long delta = time(clear, new Runnable() {
+                @Override
+                public void run() {
+                    upsert(founders);
+                }
+            });
+
+            report("snapshot import", snapshotImport, "delta upsert", delta);
+            Log.i(TAG, "snapshot " + snapshot.length() + " bytes, delta JSON " + deltaLength(founders) + " bytes");
+            assertEquals(FOUNDER_COUNT, imported[0]);
+        } finally {
+            snapshot.delete();
+        }
+    }
+
+    public void testFirstListWithSeedAgainstWithout() throws IOException, JSONException {
+        final File snapshot = new File(getContext().getCacheDir(), "benchmark_seed.db.gz");
+        final byte[] delta = delta(founders(FOUNDER_COUNT, 1)).getBytes("UTF-8");
+        final FounderProvider[] fresh = new FounderProvider[1];
+        final int[] counts = new int[2];
+        Runnable uninstall = new Runnable() {
+            @Override
+            public void run() {
+                if (fresh[0] != null) {
+                    fresh[0].shutdown();
+                    fresh[0] = null;
+                }
+
+                getMockContext().deleteDatabase(DATABASE_NAME);
+            }
+        };
+
+        try {
+            setServerVersion(SNAPSHOT_VERSION);
+            writeSnapshot(snapshot);
+            getProvider().shutdown();
+            uninstall.run();
+
+            // From no database to a filled first list cursor: with the seed, the snapshot
+            // is put in place as seedFromAsset() does and opened; without it, the list
+            // waits for sync to apply the whole directory (the download itself not counted).
+            long seeded = time(uninstall, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Snapshot.inflate(new FileInputStream(snapshot), getMockContext().getDatabasePath(DATABASE_NAME));
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+
+                    fresh[0] = freshProvider();
+                    counts[0] = firstList(fresh[0]);
+                }
+            });
+            uninstall.run();
+
+            long unseeded = time(uninstall, new Runnable() {
+                @Override
+                public void run() {
+                    fresh[0] = freshProvider();
+                    applyDelta(fresh[0], delta);
+                    counts[1] = firstList(fresh[0]);
+                }
+            });
+
+            report("first list with seed", seeded, "without", unseeded);
+            assertEquals(FOUNDER_COUNT, counts[0]);
+            assertEquals(counts[1], counts[0]);
+        } finally {
+            uninstall.run();
+            snapshot.delete();
+        }
+    }
+
+    /**
+     * @return A provider on the test's context, opening its database afresh
+     */
+    private FounderProvider freshProvider() {
+        FounderProvider provider = new FounderProvider();
+
+        provider.attachInfo(getMockContext(), null);
+
+        return provider;
+    }
+
+    /**
+     * Read the list's first cursor, as the list screen's loader does, and close it.
+     *
+     * @param provider The provider to query
+     * @return The number of founders in the list
+     */
+    private static int firstList(FounderProvider provider) {
+        return count(provider.query(Contract.SUMMARY_URI, null, null, null,
+                Contract.SORT_KEY + ", " + Contract._ID));
+    }
+
+    /**
+     * Apply a getupdatessince response as sync does: read it a founder at a time and
+     * upsert the founders SYNC_BATCH_SIZE at a time.
+     *
+     * @param provider The provider to write
+     * @param delta The response body
+     */
+    private static void applyDelta(FounderProvider provider, byte[] delta) {
+        ArrayList<ContentValues> batch = new ArrayList<>();
+
+        try {
+            DeltaReader reader = new DeltaReader(new ByteArrayInputStream(delta));
+
+            try {
+                while (true) {
+                    ContentValues founder = new ContentValues();
+
+                    if (!reader.next(founder)) {
+                        break;
+                    }
+
+                    batch.add(founder);
+
+                    if (batch.size() == SYNC_BATCH_SIZE) {
+                        upsert(provider, batch);
+                        batch = new ArrayList<>();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        upsert(provider, batch);
+    }
+
+    /**
+     * Record the server version our data is at.
+     *
+     * @param version The version
+     */
+    private void setServerVersion(int version) {
+        Bundle extras = new Bundle();
+        ContentValues state = new ContentValues();
+
+        state.put(Contract.STATE_SERVER_VERSION, version);
+        extras.putParcelable(Contract.EXTRA_STATE, state);
+        getProvider().call(Contract.METHOD_SET_SYNC_STATE, null, extras);
+    }
+
+    /**
+     * Compress the test database, as it stands, into a snapshot the provider can import.
+     *
+     * @param snapshot Where to write the snapshot
+     * @throws IOException If the copy fails
+     */
+    private void writeSnapshot(File snapshot) throws IOException {
+        SQLiteDatabase database = getMockContext().openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        Cursor checkpoint = database.rawQuery("PRAGMA wal_checkpoint(FULL)", null);
+
+        // Fold the log into the database file, so the file alone holds every founder.
+        try {
+            checkpoint.moveToFirst();
+        } finally {
+            checkpoint.close();
+            database.close();
+        }
+
+        InputStream in = new FileInputStream(getMockContext().getDatabasePath(DATABASE_NAME));
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(snapshot));
+        byte[] buffer = new byte[8192];
+        int count;
+
+        try {
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    /**
+     * @param founders Full Founder records
+     * @return How long a getupdatessince response holding them would be
+     * @throws JSONException Never, since every value is a string or number
+     */
+    private static int deltaLength(ArrayList<ContentValues> founders) throws JSONException {
+        return delta(founders).length();
+    }
+
+    /**
+     * @param founders Full Founder records
+     * @return A getupdatessince response holding them
+     * @throws JSONException Never, since every value is a string or number
+     */
+    private static String delta(ArrayList<ContentValues> founders) throws JSONException {
+        JSONArray delta = new JSONArray();
+
+        for (ContentValues founder : founders) {
+            JSONObject record = new JSONObject();
+
+            for (String field : Contract.allFieldsIdVersion()) {
+                record.put(field.equals(Contract._ID) ? Contract.SERVER_ID : field, founder.getAsString(field));
+            }
+
+            delta.put(record);
+        }
+
+        return delta.toString();
+    }
+
+    /**
+     * Write founders the way sync did before the upsert call: one update through the
+     * resolver for each, then an insert if the update matched nothing.
+     *
+     * @param founders Full Founder records
+     */
+    private void updateThenInsert(ArrayList<ContentValues> founders) {
+        ContentResolver resolver = getMockContentResolver();
+
+        for (ContentValues founder : founders) {
+            int count = resolver.update(Contract.CONTENT_URI, founder, Contract._ID + " = ?",
+                    new String[] { founder.getAsString(Contract._ID) });
+
+            if (count <= 0) {
+                resolver.insert(Contract.CONTENT_URI, founder);
+            }
+        }
+    }
+
+    /**
+     * Add made-up founders, FILL_BATCH at a time, until the directory holds a given number.
+     *
+     * @param rows How many founders the directory should hold
+     */
+    private void fill(int rows) {
+        for (int first = FOUNDER_COUNT + 1; first <= rows; first += FILL_BATCH) {
+            upsert(founders(first, Math.min(FILL_BATCH, rows - first + 1), 1));
+        }
+    }
+
+    /**
+     * Build made-up founders with every field filled in.
+     *
+     * @param count How many founders
+     * @param version The version to give each of them
+     * @return Founders with _id 1 to count
+     */
+    static ArrayList<ContentValues> founders(int count, int version) {
+        return founders(1, count, version);
+    }
+
+    /**
+     * Build made-up founders with every field filled in.
+     *
+     * @param first The _id of the first founder
+     * @param count How many founders
+     * @param version The version to give each of them
+     * @return Founders with _id first to first + count - 1
+     */
+    static ArrayList<ContentValues> founders(int first, int count, int version) {
+        ArrayList<ContentValues> founders = new ArrayList<>(count);
+
+        for (int id = first; id < first + count; id++) {
+            ContentValues founder = new ContentValues();
+
+            for (String field : Contract.allFieldsIdVersion()) {
+                founder.put(field, field + " " + id);
+            }
+
+            founder.put(Contract._ID, id);
+            founder.put(Contract.VERSION, version);
+            founder.put(Contract.PREFERRED_FULL_NAME, "Founder " + id + " Surname" + (id % 97));
+            founder.put(Contract.STATUS, "");
+            founder.put(Contract.BIOGRAPHY, FILLER + (id % MARKED_EVERY == 0 ? " " + MARKER : "") +
+                    " " + FILLER);
+            founders.add(founder);
+        }
+
+        return founders;
+    }
+
+    /**
+     * Write founders through the provider's upsert call.
+     *
+     * @param founders Full Founder records
+     */
+    void upsert(ArrayList<ContentValues> founders) {
+        upsert(getProvider(), founders);
+    }
+
+    /**
+     * Write founders through a provider's upsert call.
+     *
+     * @param provider The provider to write
+     * @param founders Full Founder records
+     */
+    static void upsert(FounderProvider provider, ArrayList<ContentValues> founders) {
+        Bundle extras = new Bundle();
+
+        extras.putParcelableArrayList(Contract.EXTRA_VALUES, founders);
+        provider.call(Contract.METHOD_UPSERT, null, extras);
+    }
+
+    /**
+     * Read every row of a cursor and close it.
+     *
+     * @param cursor The cursor
+     * @return The number of rows
+     */
+    static int count(Cursor cursor) {
+        int count = 0;
+
+        try {
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    cursor.getString(i);
+                }
+
+                ++count;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return count;
+    }
+
+    /**
+     * Read every row of a cursor, as count does, and close it.
+     *
+     * @param cursor The cursor, which must be backed by CursorWindows
+     * @return How many times the cursor filled its window
+     */
+    static int windows(Cursor cursor) {
+        int windows = 0;
+        int start = -1;
+
+        assertTrue(cursor instanceof AbstractWindowedCursor);
+
+        try {
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    cursor.getString(i);
+                }
+
+                // A refill may reuse the same window object, so watch where it starts.
+                CursorWindow window = ((AbstractWindowedCursor) cursor).getWindow();
+
+                if (window.getStartPosition() != start) {
+                    start = window.getStartPosition();
+                    Log.d(TAG, "window from row " + start + ", " + window.getNumRows() + " rows");
+                    ++windows;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return windows;
+    }
+
+    /**
+     * Run some work once to warm up, then RUNS more times.
+     *
+     * @param work The work to time
+     * @return The median time of the timed runs, in microseconds
+     */
+    static long time(Runnable work) {
+        return time(null, work);
+    }
+
+    /**
+     * Run some work once to warm up, then RUNS more times, each from the same start.
+     *
+     * @param reset Untimed work that puts things back before each run, or null
+     * @param work The work to time
+     * @return The median time of the timed runs, in microseconds
+     */
+    static long time(Runnable reset, Runnable work) {
+        long[] times = new long[RUNS];
+
+        work.run();
+
+        for (int i = 0; i < RUNS; i++) {
+            if (reset != null) {
+                reset.run();
+            }
+
+            long start = System.nanoTime();
+
+            work.run();
+            times[i] = (System.nanoTime() - start) / 1000;
+        }
+
+        Arrays.sort(times);
+
+        return times[RUNS / 2];
+    }
+
+    /**
+     * Log how the fast way compares with the slow way.
+     */
+    static void report(String fast, long fastMicros, String slow, long slowMicros) {
+        Log.i(TAG, fast + " " + fastMicros + " us, " + slow + " " + slowMicros + " us (" +
+                (fastMicros > 0 ? String.format("%.1fx", (double) slowMicros / fastMicros) : "-") + ")");
+    }
+}
@@ -0,0 +1,116 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.annotation.TargetApi;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
+import android.test.ProviderTestCase2;
+
+import java.util.ArrayList;
+
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+
+/**
+ * Checks that cancelling a query's signal stops SQLite part way through a long scan,
+ * rather than letting the query run to the end and only then discarding it.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class FounderProviderCancellationTest extends ProviderTestCase2<FounderProvider> {
+    private static final int FOUNDER_COUNT = 5000;
+
+    /**
+     * How long we let the query run before cancelling it, in milliseconds.
+     */
+    private static final long CANCEL_AFTER = 100;
+
+    /**
+     * How soon after the cancel the query must give up, in milliseconds.
+     */
+    private static final long CANCEL_WITHIN = 1000;
+
+    /**
+     * A selection that pairs every founder with every other, so the scan takes far
+     * longer than CANCEL_AFTER + CANCEL_WITHIN.
+     */
+    private static final String SLOW_SELECTION = Contract._ID + " IN (SELECT a." + Contract._ID + " FROM " +
+            Contract.FOUNDER + " a, " + Contract.FOUNDER + " b WHERE a." + Contract.SORT_KEY + " < b." +
+            Contract.SORT_KEY + " AND b." + Contract.PREFERRED_FULL_NAME + " LIKE '%' || a." +
+            Contract.PREFERRED_FULL_NAME + " || '%')";
+
+    public FounderProviderCancellationTest() {
+        super(FounderProvider.class, Contract.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ArrayList<ContentValues> founders = FounderProviderBenchmark.founders(FOUNDER_COUNT, 1);
+        Bundle extras = new Bundle();
+
+        extras.putParcelableArrayList(Contract.EXTRA_VALUES, founders);
+        getProvider().call(Contract.METHOD_UPSERT, null, extras);
+    }
+
+    public void testCancelStopsQuery() throws InterruptedException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // No signal reaches the query before Jelly Bean.
+            return;
+        }
+
+        final CancellationSignal signal = new CancellationSignal();
+        final long[] canceledAt = new long[1];
+        Thread canceler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SystemClock.sleep(CANCEL_AFTER);
+                canceledAt[0] = SystemClock.elapsedRealtime();
+                signal.cancel();
+            }
+        });
+
+        canceler.start();
+
+        try {
+            Cursor cursor = getProvider().query(Contract.CONTENT_URI, new String[] { Contract._ID },
+                    SLOW_SELECTION, null, null, signal);
+
+            try {
+                // The scan runs as the window is filled.
+                cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+
+            fail("Expected OperationCanceledException");
+        } catch (OperationCanceledException e) {
+            long stoppedAfter = SystemClock.elapsedRealtime() - canceledAt[0];
+
+            assertTrue("stopped " + stoppedAfter + " ms after cancel", stoppedAfter < CANCEL_WITHIN);
+        } finally {
+            canceler.join();
+        }
+    }
+
+    public void testCanceledSignalStopsQueryBeforeItStarts() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+
+        CancellationSignal signal = new CancellationSignal();
+
+        signal.cancel();
+
+        try {
+            getProvider().query(Contract.CONTENT_URI, new String[] { Contract._ID }, SLOW_SELECTION, null, null,
+                    signal).close();
+            fail("Expected OperationCanceledException");
+        } catch (OperationCanceledException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+
+import java.util.ArrayList;
+
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+
+/**
+ * Checks that the change log records our own edits to a founder and not the server's.
+ * A server write can reach a founder while our edit to it is still waiting to go up;
+ * if its values were logged as ours, sync would push them back to the server.
+ */
+public class FounderProviderChangeLogTest extends ProviderTestCase2<FounderProvider> {
+    private static final int FOUNDER_COUNT = 3;
+    private static final long DIRTY_ID = 2;
+
+    public FounderProviderChangeLogTest() {
+        super(FounderProvider.class, Contract.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        upsert(FounderProviderBenchmark.founders(FOUNDER_COUNT, 1));
+
+        // Our edit, to a hot and a cold column
+        ContentValues values = new ContentValues();
+
+        values.put(Contract.GIVEN_NAMES, "Ours");
+        values.put(Contract.BIOGRAPHY, "Our biography");
+        values.put(Contract.DIRTY, Contract.FLAG_DIRTY);
+        getProvider().update(founderUri(), values, null, null);
+    }
+
+    public void testLocalEditIsLogged() {
+        int before = changes();
+        ContentValues values = new ContentValues();
+
+        assertTrue(before > 0);
+
+        values.put(Contract.EXPERTISE, "Our expertise");
+        getProvider().update(founderUri(), values, null, null);
+
+        assertEquals(before + 1, changes());
+        assertEquals(Contract.EXPERTISE, lastChangedColumns());
+    }
+
+    public void testServerUpsertToDirtyFounderIsNotLogged() {
+        int before = changes();
+
+        upsert(FounderProviderBenchmark.founders(FOUNDER_COUNT, 2));
+
+        assertEquals(before, changes());
+    }
+
+    public void testServerUpdateToDirtyFounderIsNotLogged() {
+        int before = changes();
+        ContentValues values = FounderProviderBenchmark.founders(FOUNDER_COUNT, 3).get((int) DIRTY_ID - 1);
+
+        // As sync writes the server's copy back while a photo upload is still pending
+        values.remove(Contract._ID);
+        values.put(Contract.DIRTY, Contract.FLAG_DIRTY);
+        getProvider().update(founderUri(), values, null, null);
+
+        assertEquals(before, changes());
+    }
+
+    private static Uri founderUri() {
+        return ContentUris.withAppendedId(Contract.CONTENT_URI, DIRTY_ID);
+    }
+
+    /**
+     * @return How many change log entries there are for the dirty founder
+     */
+    private int changes() {
+        Cursor cursor = getProvider().query(Contract.CHANGES_URI, null, Contract.FOUNDER_ID + " = ?",
+                new String[] { Long.toString(DIRTY_ID) }, null);
+
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return The columns the newest change log entry lists
+     */
+    private String lastChangedColumns() {
+        Cursor cursor = getProvider().query(Contract.CHANGES_URI, new String[] { Contract.CHANGED_COLUMNS },
+                null, null, Contract.SEQ + " DESC");
+
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void upsert(ArrayList<ContentValues> founders) {
+        Bundle extras = new Bundle();
+
+        extras.putParcelableArrayList(Contract.EXTRA_VALUES, founders);
+        getProvider().call(Contract.METHOD_UPSERT, null, extras);
+    }
+}
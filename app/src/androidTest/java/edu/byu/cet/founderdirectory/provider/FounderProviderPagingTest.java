@@ -0,0 +1,180 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+
+/**
+ * Checks that walking the list a page at a time, as the paged founder list does, with
+ * each page keyed on the last row of the page before it, visits every founder exactly
+ * once and in the same order as the whole list.  Names repeat, so many founders share
+ * a sort key, and a few rows have the NULL sort key of a row written before sort keys
+ * existed.
+ */
+public class FounderProviderPagingTest extends ProviderTestCase2<FounderProvider> {
+    private static final String DATABASE_NAME = "founders.db";
+
+    private static final int FOUNDER_COUNT = 25;
+    private static final int PAGE_SIZE = 4;
+
+    /**
+     * Every NAME_COUNT'th founder has the same name, and so the same sort key.
+     */
+    private static final int NAME_COUNT = 3;
+
+    /**
+     * Founders whose sort key we clear.
+     */
+    private static final long[] NULL_KEY_IDS = { 5, 9, 14, 22, 23 };
+
+    public FounderProviderPagingTest() {
+        super(FounderProvider.class, Contract.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ArrayList<ContentValues> founders = FounderProviderBenchmark.founders(FOUNDER_COUNT, 1);
+        Bundle extras = new Bundle();
+
+        for (ContentValues founder : founders) {
+            founder.put(Contract.PREFERRED_FULL_NAME, "Founder " + (founder.getAsInteger(Contract._ID) % NAME_COUNT));
+        }
+
+        extras.putParcelableArrayList(Contract.EXTRA_VALUES, founders);
+        getProvider().call(Contract.METHOD_UPSERT, null, extras);
+
+        SQLiteDatabase database = getMockContext().openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+
+        try {
+            for (long id : NULL_KEY_IDS) {
+                database.execSQL("UPDATE " + Contract.FOUNDER + " SET " + Contract.SORT_KEY + " = NULL WHERE " +
+                        Contract._ID + " = " + id);
+            }
+        } finally {
+            database.close();
+        }
+    }
+
+    public void testPagesMatchWholeList() {
+        List<Long> expected = ids(getProvider().query(Contract.SUMMARY_URI, null, null, null,
+                Contract.SORT_KEY + ", " + Contract._ID));
+        List<Long> paged = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        Uri uri = Contract.pageUri(null, null, PAGE_SIZE);
+
+        assertEquals(FOUNDER_COUNT, expected.size());
+
+        while (uri != null) {
+            Cursor page = getProvider().query(uri, null, null, null, null);
+
+            try {
+                sizes.add(page.getCount());
+                uri = null;
+
+                while (page.moveToNext()) {
+                    paged.add(page.getLong(page.getColumnIndexOrThrow(Contract._ID)));
+                }
+
+                if (page.getCount() == PAGE_SIZE) {
+                    page.moveToLast();
+                    uri = Contract.pageUri(page.getString(page.getColumnIndexOrThrow(Contract.SORT_KEY)),
+                            page.getLong(page.getColumnIndexOrThrow(Contract._ID)), PAGE_SIZE);
+                }
+            } finally {
+                page.close();
+            }
+        }
+
+        assertEquals(expected, paged);
+
+        // Every page is full but the last, which holds what's left over.
+        assertEquals((FOUNDER_COUNT + PAGE_SIZE - 1) / PAGE_SIZE, sizes.size());
+        assertEquals(FOUNDER_COUNT % PAGE_SIZE, (int) sizes.get(sizes.size() - 1));
+    }
+
+    public void testNullKeysComeFirst() {
+        List<Long> page = ids(getProvider().query(Contract.pageUri(null, null, NULL_KEY_IDS.length),
+                null, null, null, null));
+
+        for (int i = 0; i < NULL_KEY_IDS.length; i++) {
+            assertEquals(NULL_KEY_IDS[i], (long) page.get(i));
+        }
+    }
+
+    public void testPageAfterNullKey() {
+        // A page that starts among the NULL keys takes the rest of them, then the keyed rows.
+        List<Long> page = ids(getProvider().query(Contract.pageUri(null, NULL_KEY_IDS[2], PAGE_SIZE),
+                null, null, null, null));
+
+        assertEquals(NULL_KEY_IDS[3], (long) page.get(0));
+        assertEquals(NULL_KEY_IDS[4], (long) page.get(1));
+        assertEquals(PAGE_SIZE, page.size());
+        assertNull(sortKey(NULL_KEY_IDS[4]));
+        assertNotNull(sortKey(page.get(2)));
+    }
+
+    public void testPageAfterTie() {
+        // Founders 3, 6, 12, ... share founder 3's key; the page picks up after 3, not after the key.
+        String key = sortKey(3);
+        List<Long> page = ids(getProvider().query(Contract.pageUri(key, 3L, PAGE_SIZE), null, null, null, null));
+
+        assertEquals(6L, (long) page.get(0));
+        assertEquals(key, sortKey(page.get(0)));
+    }
+
+    public void testPageAfterLastRowIsEmpty() {
+        List<Long> all = ids(getProvider().query(Contract.SUMMARY_URI, null, null, null,
+                Contract.SORT_KEY + ", " + Contract._ID));
+        long last = all.get(all.size() - 1);
+
+        assertEquals(0, ids(getProvider().query(Contract.pageUri(sortKey(last), last, PAGE_SIZE),
+                null, null, null, null)).size());
+    }
+
+    /**
+     * @param id A founder's _id
+     * @return That founder's sort key, or null
+     */
+    private String sortKey(long id) {
+        Cursor cursor = getProvider().query(Contract.SUMMARY_URI, null, Contract._ID + " = ?",
+                new String[] { Long.toString(id) }, null);
+
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(cursor.getColumnIndexOrThrow(Contract.SORT_KEY));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read the _id of every row of a cursor and close it.
+     *
+     * @param cursor The cursor
+     * @return The IDs in cursor order
+     */
+    private static List<Long> ids(Cursor cursor) {
+        List<Long> ids = new ArrayList<>();
+
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(cursor.getColumnIndexOrThrow(Contract._ID)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,126 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+
+import java.util.ArrayList;
+
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+
+/**
+ * Checks, with EXPLAIN QUERY PLAN, that the queries the list and sync issue most often
+ * are served by an index rather than a scan of the whole founder table or a sort of it.
+ * The plans are taken on a directory of FOUNDER_COUNT made-up founders with a spread of
+ * versions, statuses and flags, after ANALYZE, so SQLite chooses as it would at scale
+ * rather than as it does on an empty table.
+ */
+public class FounderProviderQueryPlanTest extends ProviderTestCase2<FounderProvider> {
+    private static final String DATABASE_NAME = "founders.db";
+    private static final String SELECT = "SELECT * FROM " + Contract.FOUNDER;
+    private static final int FOUNDER_COUNT = 10000;
+
+    private SQLiteDatabase mDatabase;
+
+    public FounderProviderQueryPlanTest() {
+        super(FounderProvider.class, Contract.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        ArrayList<ContentValues> founders = FounderProviderBenchmark.founders(FOUNDER_COUNT, 1);
+        String[] statuses = { "", "Active", "Alumni", "Emeritus" };
+        Bundle extras = new Bundle();
+
+        for (ContentValues founder : founders) {
+            int id = founder.getAsInteger(Contract._ID);
+
+            founder.put(Contract.VERSION, id);
+            founder.put(Contract.STATUS, statuses[id % statuses.length]);
+        }
+
+        // Have the provider create its schema and fill it, then look at it on a connection
+        // of our own.
+        extras.putParcelableArrayList(Contract.EXTRA_VALUES, founders);
+        getProvider().call(Contract.METHOD_UPSERT, null, extras);
+        mDatabase = getMockContext().openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+
+        // A few founders waiting to go to the server, as there would be between syncs.
+        mDatabase.execSQL("UPDATE " + Contract.FOUNDER + " SET " + Contract.DIRTY + " = 1 WHERE " +
+                Contract._ID + " % 100 = 0");
+        mDatabase.execSQL("UPDATE " + Contract.FOUNDER + " SET " + Contract.NEW + " = 1 WHERE " +
+                Contract._ID + " % 500 = 0");
+        mDatabase.execSQL("UPDATE " + Contract.FOUNDER + " SET " + Contract.DELETED + " = 1 WHERE " +
+                Contract._ID + " % 1000 = 0");
+        mDatabase.execSQL("ANALYZE");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDatabase.close();
+        super.tearDown();
+    }
+
+    public void testListIsSortedByIndex() {
+        assertIndexed(SELECT + " ORDER BY " + Contract.SORT_KEY + ", " + Contract._ID, null);
+    }
+
+    public void testFacetListIsSortedByIndex() {
+        assertIndexed(SELECT + " WHERE " + Contract.STATUS + " = '' ORDER BY " + Contract.SORT_KEY, null);
+    }
+
+    public void testSyncScansUseFlagIndexes() {
+        boolean partial = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+
+        assertIndexed(SELECT + " WHERE " + Contract.SELECTION_DIRTY + " ORDER BY " + Contract.VERSION,
+                partial ? "founder_dirty_index" : null);
+        assertIndexed(SELECT + " WHERE " + Contract.SELECTION_NEW + " ORDER BY " + Contract.VERSION,
+                partial ? "founder_new_index" : null);
+        assertIndexed(SELECT + " WHERE " + Contract.SELECTION_DELETED + " ORDER BY " + Contract.VERSION,
+                partial ? "founder_deleted_index" : null);
+    }
+
+    public void testVersionLookupsUseVersionIndex() {
+        assertIndexed("SELECT MAX(" + Contract.VERSION + ") FROM " + Contract.FOUNDER, "founder_version_index");
+        assertIndexed("SELECT " + Contract._ID + " FROM " + Contract.FOUNDER + " WHERE " + Contract.VERSION +
+                " > " + (FOUNDER_COUNT - 10) + " ORDER BY " + Contract.VERSION, "founder_version_index");
+        assertIndexed("SELECT " + Contract.STATE_VALUE + " FROM " + Contract.SYNC_STATE + " WHERE " +
+                Contract.STATE_NAME + " = '" + Contract.STATE_SERVER_VERSION + "'", null);
+    }
+
+    /**
+     * Fail if a query would scan the founder table without an index, or sort it in a
+     * temporary b-tree.
+     *
+     * @param query The query to check
+     * @param index An index the plan must use, or null for any
+     */
+    private void assertIndexed(String query, String index) {
+        Cursor plan = mDatabase.rawQuery("EXPLAIN QUERY PLAN " + query, null);
+        StringBuilder details = new StringBuilder();
+
+        try {
+            int detailColumn = plan.getColumnIndexOrThrow("detail");
+
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailColumn);
+
+                details.append(detail).append("; ");
+                assertFalse(query + " -> " + detail, detail.contains("TEMP B-TREE"));
+                assertFalse(query + " -> " + detail, detail.startsWith("SCAN") && !detail.contains("INDEX"));
+            }
+        } finally {
+            plan.close();
+        }
+
+        if (index != null) {
+            assertTrue(query + " -> " + details, details.indexOf(index) >= 0);
+        }
+    }
+}
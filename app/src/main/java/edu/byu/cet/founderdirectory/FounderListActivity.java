@@ -1,8 +1,15 @@
 package edu.byu.cet.founderdirectory;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
@@ -12,17 +19,25 @@ import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import edu.byu.cet.founderdirectory.fastscroller.FastScroller;
+import edu.byu.cet.founderdirectory.fastscroller.SectionIndex;
 import edu.byu.cet.founderdirectory.fastscroller.SectionTitleProvider;
 import edu.byu.cet.founderdirectory.provider.FounderProvider;
 import edu.byu.cet.founderdirectory.utilities.AnalyticsManager;
 import edu.byu.cet.founderdirectory.utilities.BitmapWorkerTask;
 import edu.byu.cet.founderdirectory.utilities.PhotoManager;
+import edu.byu.cet.founderdirectory.utilities.Utilities;
 
 /**
  * An activity representing a list of Founders. This activity
@@ -39,12 +54,29 @@ public class FounderListActivity extends AppCompatActivity implements LoaderMana
      */
     private static final String TAG = "FounderListActivity";
 
+    /**
+     * Number of founders per page in paged mode.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * In paged mode, how close to the end of the loaded rows we bind before fetching
+     * the next page.
+     */
+    private static final int PAGE_PREFETCH = 20;
+
     /**
      * Whether or not the activity is in two-pane mode, i.e. running on a tablet
      * device.
      */
     private boolean mTwoPane;
 
+    /**
+     * Whether the list loads founders a page at a time as the user scrolls, rather
+     * than the whole directory in one cursor.  See Utilities.isPagedList().
+     */
+    private boolean mPagedList;
+
     private RecyclerView mRecyclerView;
     private FastScroller mFastScroller;
 
@@ -68,6 +100,7 @@ public class FounderListActivity extends AppCompatActivity implements LoaderMana
 
         mRecyclerView = (RecyclerView) findViewById(R.id.founder_list);
         assert mRecyclerView != null;
+        mPagedList = Utilities.isPagedList(this);
         setupRecyclerView();
 
         if (findViewById(R.id.founder_detail_container) != null) {
@@ -85,20 +118,47 @@ public class FounderListActivity extends AppCompatActivity implements LoaderMana
         getSupportLoaderManager().initLoader(0, null, this);
         mFastScroller = (FastScroller) findViewById(R.id.fastscroll);
         mRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        mRecyclerView.setAdapter(new FounderAdapter());
+        mRecyclerView.setAdapter(new FounderAdapter(mPagedList));
         mFastScroller.setRecyclerView(mRecyclerView);
 
         // NEEDSWORK: change color of scrolling thumb to accent color when scrolling
         // NEEDSWORK: also change color of section title popup to accent color
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.founder_list, menu);
+        menu.findItem(R.id.action_paged_list).setChecked(mPagedList);
+
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_paged_list) {
+            // Start over with a list, and a loader, built for the other mode.
+            Utilities.setPagedList(this, !mPagedList);
+            recreate();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
         Log.d(TAG, "onCreateLoader: " + id + ", args: " + args);
-        return(new CursorLoader(this,
-                FounderProvider.Contract.CONTENT_URI,
+
+        if (mPagedList) {
+            // The loader supplies, and reloads on change, just the first page.
+            return new CancellableCursorLoader(this, FounderProvider.Contract.pageUri(null, null, PAGE_SIZE),
+                    null, null, null, null);
+        }
+
+        return(new SectionedCursorLoader(this,
+                FounderProvider.Contract.SUMMARY_URI,
                 null, null, null,
-                FounderProvider.Contract.PREFERRED_FULL_NAME));
+                FounderProvider.Contract.SORT_KEY + ", " + FounderProvider.Contract._ID));
     }
 
     @Override
@@ -110,6 +170,116 @@ public class FounderListActivity extends AppCompatActivity implements LoaderMana
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
         Log.d(TAG, "onLoaderReset: " + loader);
+        ((FounderAdapter) mRecyclerView.getAdapter()).setFounders(null);
+    }
+
+    /**
+     * CursorLoader whose query stops as soon as the loader cancels it, as it does when a
+     * change in the data or a restart supersedes a load still running.  The support
+     * library's CursorLoader lets an abandoned query run to the end, holding a read
+     * connection the whole time.  Cancellation needs Jelly Bean; before that we load as
+     * CursorLoader does.
+     */
+    private static class CancellableCursorLoader extends CursorLoader {
+        private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+        private CancellationSignal mCancellationSignal;
+
+        public CancellableCursorLoader(Context context, Uri uri, String[] projection, String selection,
+                                       String[] selectionArgs, String sortOrder) {
+            super(context, uri, projection, selection, selectionArgs, sortOrder);
+        }
+
+        @Override
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        public Cursor loadInBackground() {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                return super.loadInBackground();
+            }
+
+            synchronized (this) {
+                mCancellationSignal = new CancellationSignal();
+            }
+
+            try {
+                Cursor cursor = getContext().getContentResolver().query(getUri(), getProjection(), getSelection(),
+                        getSelectionArgs(), getSortOrder(), mCancellationSignal);
+
+                if (cursor != null) {
+                    try {
+                        // Fill the window here, where the signal can still stop it.
+                        cursor.getCount();
+                        cursor.registerContentObserver(mObserver);
+                    } catch (RuntimeException e) {
+                        cursor.close();
+                        throw e;
+                    }
+                }
+
+                return cursor;
+            } catch (OperationCanceledException e) {
+                // A newer load has replaced this one, and will deliver its result instead.
+                return null;
+            } finally {
+                synchronized (this) {
+                    mCancellationSignal = null;
+                }
+            }
+        }
+
+        // The loader manager and forceLoad() both cancel through here.  A task that hasn't
+        // started yet never runs, so we only have to stop one that's already querying.
+        @Override
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        public boolean cancelLoad() {
+            boolean canceled = super.cancelLoad();
+
+            synchronized (this) {
+                if (mCancellationSignal != null) {
+                    mCancellationSignal.cancel();
+                }
+            }
+
+            return canceled;
+        }
+    }
+
+    /**
+     * CursorLoader that, still on the loader's background thread, builds the alphabet
+     * section index for the list, so the fast scroller never has to walk the cursor.
+     */
+    private static class SectionedCursorLoader extends CancellableCursorLoader {
+        public SectionedCursorLoader(Context context, Uri uri, String[] projection, String selection,
+                                     String[] selectionArgs, String sortOrder) {
+            super(context, uri, projection, selection, selectionArgs, sortOrder);
+        }
+
+        @Override
+        public Cursor loadInBackground() {
+            Cursor cursor = super.loadInBackground();
+
+            if (cursor == null) {
+                return null;
+            }
+
+            return new SectionedCursor(cursor, SectionIndex.fromCursor(cursor,
+                    cursor.getColumnIndexOrThrow(FounderProvider.Contract.SECTION)));
+        }
+    }
+
+    /**
+     * A founder cursor that carries the section index built for it.
+     */
+    private static class SectionedCursor extends CursorWrapper {
+        private final SectionIndex mSectionIndex;
+
+        public SectionedCursor(Cursor cursor, SectionIndex sectionIndex) {
+            super(cursor);
+            mSectionIndex = sectionIndex;
+        }
+
+        public SectionIndex getSectionIndex() {
+            return mSectionIndex;
+        }
     }
 
     public class FounderRowController extends RecyclerView.ViewHolder implements View.OnClickListener {
@@ -161,12 +331,71 @@ public class FounderListActivity extends AppCompatActivity implements LoaderMana
         }
     }
 
-    public class FounderAdapter extends RecyclerView.Adapter<FounderRowController> implements SectionTitleProvider {
+    public class FounderAdapter extends RecyclerView.Adapter<FounderRowController>
+            implements SectionTitleProvider, SectionIndexer {
         private Cursor mFounders = null;
-        private int mNameColumn = -1;
+        private int mSectionColumn = -1;
+
+        /**
+         * Section index for mFounders, when the loader built one.
+         */
+        private SectionIndex mSectionIndex = null;
+
+        /**
+         * Whether we load founders a page at a time.  In paged mode mFounders is the
+         * first page, owned by the loader, and mPages holds every page in order.
+         */
+        private final boolean mPaged;
+
+        /**
+         * Pages loaded so far, in order.  Every page but the first is ours to close.
+         */
+        private final List<Cursor> mPages = new ArrayList<>();
+
+        /**
+         * Task fetching the next page, or refetching the pages after a new first page,
+         * if any.
+         */
+        private PageLoadTask mPageLoadTask = null;
+
+        public FounderAdapter(boolean paged) {
+            mPaged = paged;
+        }
 
         public void setFounders(Cursor cursor) {
             mFounders = cursor;
+            mSectionIndex = (cursor instanceof SectionedCursor) ? ((SectionedCursor) cursor).getSectionIndex() : null;
+
+            if (mPaged) {
+                // Whatever we were fetching followed the old first page.
+                if (mPageLoadTask != null) {
+                    mPageLoadTask.cancel(false);
+                    mPageLoadTask = null;
+                }
+
+                if (cursor == null) {
+                    closePagesAfter(1);
+                    mPages.clear();
+                } else if (mPages.isEmpty()) {
+                    mPages.add(cursor);
+                } else {
+                    // The loader reloads only the first page when the data changes.  Keep
+                    // showing the pages after it, so the list neither shrinks nor jumps,
+                    // while we fetch them again in the background to follow it.
+                    int pageCount = mPages.size() - 1;
+
+                    mPages.set(0, cursor);
+
+                    if (pageCount > 0) {
+                        if (cursor.getCount() < PAGE_SIZE) {
+                            closePagesAfter(1);
+                        } else {
+                            loadPages(cursor, pageCount, true);
+                        }
+                    }
+                }
+            }
+
             notifyDataSetChanged();
         }
 
@@ -177,8 +406,11 @@ public class FounderListActivity extends AppCompatActivity implements LoaderMana
 
         @Override
         public void onBindViewHolder(FounderRowController holder, int position) {
-            mFounders.moveToPosition(position);
-            holder.bindModel(mFounders);
+            holder.bindModel(moveToPosition(position));
+
+            if (mPaged && position >= getItemCount() - PAGE_PREFETCH) {
+                loadNextPage();
+            }
         }
 
         @Override
@@ -187,18 +419,186 @@ public class FounderListActivity extends AppCompatActivity implements LoaderMana
                 return 0;
             }
 
+            if (mPaged) {
+                int count = 0;
+
+                for (Cursor page : mPages) {
+                    count += page.getCount();
+                }
+
+                return count;
+            }
+
             return mFounders.getCount();
         }
 
         @Override
         public String getSectionTitle(int position) {
-            mFounders.moveToPosition(position);
+            if (mSectionIndex != null) {
+                return mSectionIndex.getSectionTitle(position);
+            }
+
+            // Without an index (paged mode) we have to look at the row itself.
+            Cursor founder = moveToPosition(position);
+
+            if (mSectionColumn < 0) {
+                mSectionColumn = founder.getColumnIndexOrThrow(FounderProvider.Contract.SECTION);
+            }
+
+            return SectionIndex.sectionTitle(founder.getString(mSectionColumn));
+        }
+
+        @Override
+        public Object[] getSections() {
+            return mSectionIndex != null ? mSectionIndex.getSections() : new Object[0];
+        }
+
+        @Override
+        public int getPositionForSection(int sectionIndex) {
+            return mSectionIndex != null ? mSectionIndex.getPositionForSection(sectionIndex) : 0;
+        }
+
+        @Override
+        public int getSectionForPosition(int position) {
+            return mSectionIndex != null ? mSectionIndex.getSectionForPosition(position) : 0;
+        }
+
+        /**
+         * Position the cursor holding the given row on that row.
+         *
+         * @param position Position of the row in the adapter
+         * @return The cursor holding that row
+         */
+        private Cursor moveToPosition(int position) {
+            Cursor cursor = mFounders;
+
+            if (mPaged) {
+                // Every page but the last is exactly PAGE_SIZE rows.
+                cursor = mPages.get(position / PAGE_SIZE);
+                position %= PAGE_SIZE;
+            }
+
+            cursor.moveToPosition(position);
+
+            return cursor;
+        }
+
+        /**
+         * Start fetching the page after the last one we have, unless we're already
+         * fetching it or the last page came back short (so there are no more rows).
+         */
+        private void loadNextPage() {
+            Cursor lastPage = mPages.isEmpty() ? null : mPages.get(mPages.size() - 1);
+
+            if (mPageLoadTask != null || lastPage == null || lastPage.getCount() < PAGE_SIZE) {
+                return;
+            }
+
+            loadPages(lastPage, 1, false);
+        }
+
+        /**
+         * Start fetching pages that follow a given one.
+         *
+         * @param page The page the first new page follows; it must hold PAGE_SIZE rows
+         * @param pageCount Most pages to fetch
+         * @param replace True to replace every page after the first with the ones we
+         *                fetch, false to add them to the end
+         */
+        private void loadPages(Cursor page, int pageCount, boolean replace) {
+            page.moveToLast();
+            mPageLoadTask = new PageLoadTask(pageCount, replace);
+            mPageLoadTask.execute(FounderProvider.Contract.pageUri(
+                    page.getString(page.getColumnIndexOrThrow(FounderProvider.Contract.SORT_KEY)),
+                    page.getLong(page.getColumnIndexOrThrow(FounderProvider.Contract._ID)),
+                    PAGE_SIZE));
+        }
+
+        /**
+         * Close and forget the pages from a given one on.  The first page belongs to
+         * the loader, so we never close it.
+         *
+         * @param first Index of the first page to drop, at least 1
+         */
+        private void closePagesAfter(int first) {
+            while (mPages.size() > Math.max(first, 1)) {
+                mPages.remove(mPages.size() - 1).close();
+            }
+        }
+
+        /**
+         * Background query for the pages after a given one, each keyed on the last row
+         * of the page before it.
+         */
+        private class PageLoadTask extends AsyncTask<Uri, Void, List<Cursor>> {
+            private final int mPageCount;
+            private final boolean mReplace;
+
+            public PageLoadTask(int pageCount, boolean replace) {
+                mPageCount = pageCount;
+                mReplace = replace;
+            }
 
-            if (mNameColumn < 0) {
-                mNameColumn = mFounders.getColumnIndexOrThrow(FounderProvider.Contract.PREFERRED_FULL_NAME);
+            @Override
+            protected List<Cursor> doInBackground(Uri... uris) {
+                List<Cursor> pages = new ArrayList<>();
+                Uri uri = uris[0];
+
+                while (pages.size() < mPageCount && !isCancelled()) {
+                    Cursor page = getContentResolver().query(uri, null, null, null, null);
+
+                    if (page == null) {
+                        break;
+                    }
+
+                    // Fill the cursor window here rather than on the UI thread.
+                    int count = page.getCount();
+
+                    pages.add(page);
+
+                    if (count < PAGE_SIZE) {
+                        break;
+                    }
+
+                    page.moveToLast();
+                    uri = FounderProvider.Contract.pageUri(
+                            page.getString(page.getColumnIndexOrThrow(FounderProvider.Contract.SORT_KEY)),
+                            page.getLong(page.getColumnIndexOrThrow(FounderProvider.Contract._ID)),
+                            PAGE_SIZE);
+                }
+
+                return pages;
             }
 
-            return mFounders.getString(mNameColumn).trim().substring(0, 1);
+            @Override
+            protected void onPostExecute(List<Cursor> pages) {
+                mPageLoadTask = null;
+
+                if (mReplace) {
+                    closePagesAfter(1);
+                    mPages.addAll(pages);
+                    notifyDataSetChanged();
+                } else {
+                    int start = getItemCount();
+                    int count = 0;
+
+                    for (Cursor page : pages) {
+                        count += page.getCount();
+                    }
+
+                    mPages.addAll(pages);
+                    notifyItemRangeInserted(start, count);
+                }
+            }
+
+            @Override
+            protected void onCancelled(List<Cursor> pages) {
+                if (pages != null) {
+                    for (Cursor page : pages) {
+                        page.close();
+                    }
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
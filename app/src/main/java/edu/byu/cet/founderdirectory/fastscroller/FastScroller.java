@@ -3,6 +3,7 @@ package edu.byu.cet.founderdirectory.fastscroller;
 import android.content.Context;
 import android.content.res.Resources;
 import android.os.Build;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -11,6 +12,7 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.SectionIndexer;
 
 import edu.byu.cet.founderdirectory.R;
 
@@ -33,6 +35,8 @@ public class FastScroller extends LinearLayout {
 
     private SectionTitleProvider titleProvider;
 
+    private SectionIndexer sectionIndexer;
+
     public FastScroller(Context context) {
         super(context, null);
     }
@@ -55,12 +59,15 @@ public class FastScroller extends LinearLayout {
     /**
      * Attach the FastScroller to RecyclerView. Should be used after the Adapter is set
      * to the RecyclerView. If the adapter implements SectionTitleProvider, the FastScroller
-     * will show a bubble with title.
+     * will show a bubble with title. If the adapter also implements SectionIndexer, the
+     * FastScroller jumps from section to section and takes the bubble title from the
+     * section index, without asking the adapter about individual rows.
      * @param recyclerView A RecyclerView to attach the FastScroller to
      */
     public void setRecyclerView(RecyclerView recyclerView) {
         this.recyclerView = recyclerView;
         if(recyclerView.getAdapter() instanceof SectionTitleProvider) titleProvider = (SectionTitleProvider) recyclerView.getAdapter();
+        if(recyclerView.getAdapter() instanceof SectionIndexer) sectionIndexer = (SectionIndexer) recyclerView.getAdapter();
         recyclerView.addOnScrollListener(scrollListener);
         invalidateVisibility();
         recyclerView.setOnHierarchyChangeListener(new OnHierarchyChangeListener() {
@@ -165,8 +172,24 @@ public class FastScroller extends LinearLayout {
         if (recyclerView != null) {
             int itemCount = recyclerView.getAdapter().getItemCount();
             int targetPos = (int) Utils.getValueInRange(0, itemCount - 1, (int) (relativePos * (float) itemCount));
-            recyclerView.scrollToPosition(targetPos);
-            if(titleProvider!=null) bubble.setText(titleProvider.getSectionTitle(targetPos));
+            Object[] sections = sectionIndexer != null ? sectionIndexer.getSections() : null;
+            if(sections != null && sections.length > 0) {
+                //jump to the first row of the section under the handle
+                int section = sectionIndexer.getSectionForPosition(targetPos);
+                scrollToStartOf(sectionIndexer.getPositionForSection(section));
+                bubble.setText(sections[section].toString());
+            } else {
+                recyclerView.scrollToPosition(targetPos);
+                if(titleProvider!=null) bubble.setText(titleProvider.getSectionTitle(targetPos));
+            }
+        }
+    }
+
+    private void scrollToStartOf(int position) {
+        if(recyclerView.getLayoutManager() instanceof LinearLayoutManager) {
+            ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(position, 0);
+        } else {
+            recyclerView.scrollToPosition(position);
         }
     }
 
@@ -0,0 +1,111 @@
+package edu.byu.cet.founderdirectory.fastscroller;
+
+import android.database.Cursor;
+import android.widget.SectionIndexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Alphabet section index over a sorted list, built once in a single pass so that
+ * looking up a section never has to touch the underlying cursor.  Mapping a section
+ * to its first position is O(1); mapping a position to its section is a binary search.
+ */
+public class SectionIndex implements SectionIndexer {
+
+    /**
+     * Section title for rows whose name doesn't start with a letter or digit.
+     */
+    public static final String OTHER = "#";
+
+    private final String[] sections;
+    private final int[] sectionStarts;
+
+    private SectionIndex(String[] sections, int[] sectionStarts) {
+        this.sections = sections;
+        this.sectionStarts = sectionStarts;
+    }
+
+    /**
+     * Build an index over a cursor whose rows are already grouped by section, such as
+     * founders ordered by sort_key.  Leaves the cursor before its first row.
+     * @param cursor A cursor in section order
+     * @param column Index of the column holding each row's section (or its sort text)
+     * @return The section index
+     */
+    public static SectionIndex fromCursor(Cursor cursor, int column) {
+        List<String> sections = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        String current = null;
+
+        cursor.moveToPosition(-1);
+
+        while (cursor.moveToNext()) {
+            String title = sectionTitle(cursor.getString(column));
+
+            if (!title.equals(current)) {
+                sections.add(title);
+                starts.add(cursor.getPosition());
+                current = title;
+            }
+        }
+
+        cursor.moveToPosition(-1);
+
+        int[] sectionStarts = new int[starts.size()];
+
+        for (int i = 0; i < sectionStarts.length; i++) {
+            sectionStarts[i] = starts.get(i);
+        }
+
+        return new SectionIndex(sections.toArray(new String[sections.size()]), sectionStarts);
+    }
+
+    /**
+     * The section a piece of text belongs in: its first letter or digit, upper-cased.
+     * @param text The text, which may be null or start with whitespace
+     * @return The section title
+     */
+    public static String sectionTitle(String text) {
+        if (text != null) {
+            String trimmed = text.trim();
+
+            if (!trimmed.isEmpty() && Character.isLetterOrDigit(trimmed.charAt(0))) {
+                return trimmed.substring(0, 1).toUpperCase();
+            }
+        }
+
+        return OTHER;
+    }
+
+    @Override
+    public Object[] getSections() {
+        return sections;
+    }
+
+    @Override
+    public int getPositionForSection(int section) {
+        if (sectionStarts.length == 0) {
+            return 0;
+        }
+
+        return sectionStarts[Math.max(0, Math.min(section, sectionStarts.length - 1))];
+    }
+
+    @Override
+    public int getSectionForPosition(int position) {
+        int index = Arrays.binarySearch(sectionStarts, position);
+
+        // A miss gives -(insertion point) - 1; the section is the one just before it.
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    /**
+     * @param position Position of a row
+     * @return The title of the section holding that row
+     */
+    public String getSectionTitle(int position) {
+        return sections.length == 0 ? OTHER : sections[getSectionForPosition(position)];
+    }
+}
@@ -1,19 +1,44 @@
 package edu.byu.cet.founderdirectory.provider;
 
+import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.SystemClock;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * ContentProvider for the CET Founders Directory app.
@@ -21,20 +46,109 @@ import android.text.TextUtils;
  * Created by Liddle on 2/10/16.
  */
 public class FounderProvider extends ContentProvider {
+    /**
+     * Tag for logging.
+     */
+    private static final String TAG = FounderProvider.class.getSimpleName();
+
     // URI matcher codes
     private static final int URI_MATCHER_FOUNDERS = 1;
     private static final int URI_MATCHER_FOUNDER_ID = 2;
+    private static final int URI_MATCHER_SEARCH = 3;
+    private static final int URI_MATCHER_SUMMARY = 4;
+    private static final int URI_MATCHER_PAGE = 5;
+    private static final int URI_MATCHER_SYNC_STATE = 6;
+    private static final int URI_MATCHER_CHANGES = 7;
+    private static final int URI_MATCHER_FACETS = 8;
+    private static final int URI_MATCHER_PHOTO_VALIDATORS = 9;
+
+    /**
+     * Selection that picks one founder by _id, as SyncService writes it.
+     */
+    private static final String SELECTION_ID = Contract._ID + " = ?";
+
+    /**
+     * Fields of a Founder record kept in the founder table, in upsert order, ending
+     * with the sort key and section; and those kept in founder_cold, ending with its
+     * copy of the version.  Neither has _id.
+     */
+    private static final String[] HOT_FIELDS = hotFields();
+    private static final String[] COLD_FIELDS = coldFields();
+
+    // Compiled upsert statements, one pair per table
+    private static final String SQL_UPSERT_UPDATE = upsertSql(Contract.FOUNDER, HOT_FIELDS, true);
+    private static final String SQL_UPSERT_INSERT = upsertSql(Contract.FOUNDER, HOT_FIELDS, false);
+    private static final String SQL_UPSERT_COLD_UPDATE = upsertSql(Contract.FOUNDER_COLD, COLD_FIELDS, true);
+    private static final String SQL_UPSERT_COLD_INSERT = upsertSql(Contract.FOUNDER_COLD, COLD_FIELDS, false);
+
+    /**
+     * Query for every column of one founder.
+     */
+    private static final String SQL_FOUNDER_BY_ID = "SELECT * FROM " + Contract.FOUNDER_RECORD + " WHERE " +
+            SELECTION_ID;
+
+    /**
+     * Compiled statement that sets one sync state entry.
+     */
+    private static final String SQL_SYNC_STATE = "INSERT OR REPLACE INTO " + Contract.SYNC_STATE + " (" +
+            Contract.STATE_NAME + ", " + Contract.STATE_VALUE + ") VALUES (?, ?)";
 
     // MIME type codes
     private static final String MIME_COLLECTION = "vnd.android.cursor.dir/";
     private static final String MIME_ITEM = "vnd.android.cursor.item/";
     private static final String MIME_BASE = "vnd.helloandroid.";
 
+    /**
+     * Columns copied into the full-text search index, in index column order.
+     */
+    private static final String[] SEARCH_COLUMNS = {
+            Contract.GIVEN_NAMES, Contract.SURNAMES, Contract.PREFERRED_FIRST_NAME,
+            Contract.PREFERRED_FULL_NAME, Contract.ORGANIZATION_NAME, Contract.JOB_TITLE,
+            Contract.EXPERTISE, Contract.BIOGRAPHY
+    };
+
+    /**
+     * Ranking weight of a hit in each of the SEARCH_COLUMNS.
+     */
+    private static final double[] SEARCH_WEIGHTS = { 4.0, 4.0, 4.0, 4.0, 2.0, 2.0, 1.5, 1.0 };
+
     /**
      * Handle to our underlying database.
      */
     private FounderDatabaseHelper mDatabase = null;
 
+    /**
+     * Most compiled write statements we keep around.
+     */
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    /**
+     * Compiled statements for our fixed-shape writes: upserts, inserts, and updates
+     * or deletes of a single row by _id.
+     */
+    private final StatementCache mStatements = new StatementCache(STATEMENT_CACHE_SIZE);
+
+    /**
+     * Founders we copy from a snapshot per transaction.
+     */
+    private static final int SNAPSHOT_BATCH_SIZE = 500;
+
+    /**
+     * Most founder rows we keep in memory for lookups by _id.
+     */
+    private static final int ROW_CACHE_SIZE = 64;
+
+    /**
+     * Recently read founder rows, for detail views and sync that look one founder up
+     * again and again.
+     */
+    private final RowCache mRows = new RowCache(ROW_CACHE_SIZE);
+
+    /**
+     * Coalesces our change notifications so a burst of writes reaches observers once.
+     */
+    private NotificationCoalescer mNotifier = null;
+
     /**
      * URI matcher to identify what kind of request we're receiving.
      */
@@ -45,6 +159,114 @@ public class FounderProvider extends ContentProvider {
     static {
         sUriMatcher.addURI(Contract.AUTHORITY, Contract.FOUNDER, URI_MATCHER_FOUNDERS);
         sUriMatcher.addURI(Contract.AUTHORITY, Contract.FOUNDER + "/#", URI_MATCHER_FOUNDER_ID);
+        sUriMatcher.addURI(Contract.AUTHORITY, Contract.SEARCH + "/*", URI_MATCHER_SEARCH);
+        sUriMatcher.addURI(Contract.AUTHORITY, Contract.FOUNDER + "/" + Contract.SUMMARY, URI_MATCHER_SUMMARY);
+        sUriMatcher.addURI(Contract.AUTHORITY, Contract.FOUNDER + "/" + Contract.PAGE, URI_MATCHER_PAGE);
+        sUriMatcher.addURI(Contract.AUTHORITY, Contract.SYNC_STATE, URI_MATCHER_SYNC_STATE);
+        sUriMatcher.addURI(Contract.AUTHORITY, Contract.FOUNDER_CHANGES, URI_MATCHER_CHANGES);
+        sUriMatcher.addURI(Contract.AUTHORITY, Contract.FACETS, URI_MATCHER_FACETS);
+        sUriMatcher.addURI(Contract.AUTHORITY, Contract.PHOTO_VALIDATOR, URI_MATCHER_PHOTO_VALIDATORS);
+    }
+
+    @Override
+    public @NonNull ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+        ContentProviderResult[] results;
+
+        // Run every operation in a single transaction so we pay for one commit, not one per row,
+        // and hold the change notifications until the transaction has ended.
+        suspendNotifications();
+        mRows.beginWrite();
+        database.beginTransaction();
+
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            mRows.endWrite();
+            resumeNotifications();
+        }
+
+        return results;
+    }
+
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        switch (method) {
+            case Contract.METHOD_CHECKPOINT:
+                mDatabase.checkpoint();
+                return null;
+            case Contract.METHOD_SUSPEND_NOTIFICATIONS:
+                suspendNotifications();
+                return null;
+            case Contract.METHOD_RESUME_NOTIFICATIONS:
+                resumeNotifications();
+                return null;
+            case Contract.METHOD_UPSERT:
+                ArrayList<ContentValues> founders = extras.getParcelableArrayList(Contract.EXTRA_VALUES);
+                long[] deleteIds = extras.getLongArray(Contract.EXTRA_DELETE_IDS);
+                ContentValues state = extras.getParcelable(Contract.EXTRA_STATE);
+                Bundle result = new Bundle();
+
+                result.putInt(Contract.EXTRA_COUNT, upsert(founders, deleteIds, state));
+                return result;
+            case Contract.METHOD_SET_SYNC_STATE:
+                setSyncState((ContentValues) extras.getParcelable(Contract.EXTRA_STATE));
+                return null;
+            case Contract.METHOD_MAINTAIN:
+                return maintain(Long.parseLong(arg), extras != null && extras.getBoolean(Contract.EXTRA_ALLOW_REBUILD));
+            case Contract.METHOD_IMPORT_SNAPSHOT:
+                Bundle imported = new Bundle();
+
+                imported.putInt(Contract.EXTRA_COUNT, importSnapshot(new File(arg)));
+                return imported;
+            case Contract.METHOD_ROW_CACHE_STATS:
+                Bundle rowStats = new Bundle();
+
+                rowStats.putLong(Contract.EXTRA_HITS, mRows.getHits());
+                rowStats.putLong(Contract.EXTRA_MISSES, mRows.getMisses());
+                return rowStats;
+            case Contract.METHOD_STATEMENT_STATS:
+                Bundle stats = new Bundle();
+
+                stats.putLong(Contract.EXTRA_HITS, mStatements.getHits());
+                stats.putLong(Contract.EXTRA_MISSES, mStatements.getMisses());
+                return stats;
+            case Contract.METHOD_SET_NOTIFICATION_WINDOW:
+                if (mNotifier != null) {
+                    mNotifier.setWindow(Long.parseLong(arg));
+                }
+                return null;
+            default:
+                return super.call(method, arg, extras);
+        }
+    }
+
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+        int count = 0;
+
+        suspendNotifications();
+        mRows.beginWrite();
+        database.beginTransaction();
+
+        try {
+            for (ContentValues value : values) {
+                insert(uri, value);
+                ++count;
+            }
+
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            mRows.endWrite();
+            resumeNotifications();
+        }
+
+        return count;
     }
 
     @Override
@@ -58,6 +280,14 @@ public class FounderProvider extends ContentProvider {
             // This could be an if/else, but with more tables we'll want a switch instead.
             case URI_MATCHER_FOUNDER_ID:
                 return MIME_ITEM + MIME_BASE + Contract.FOUNDER;
+            case URI_MATCHER_SYNC_STATE:
+                return MIME_COLLECTION + MIME_BASE + Contract.SYNC_STATE;
+            case URI_MATCHER_CHANGES:
+                return MIME_COLLECTION + MIME_BASE + Contract.FOUNDER_CHANGES;
+            case URI_MATCHER_FACETS:
+                return MIME_COLLECTION + MIME_BASE + Contract.FOUNDER_FACETS;
+            case URI_MATCHER_PHOTO_VALIDATORS:
+                return MIME_COLLECTION + MIME_BASE + Contract.PHOTO_VALIDATOR;
             default:
                 return MIME_COLLECTION + MIME_BASE + Contract.FOUNDER;
         }
@@ -65,7 +295,44 @@ public class FounderProvider extends ContentProvider {
 
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues initialValues) {
-        long rowId = mDatabase.getWritableDatabase().insert(tableForUri(uri), Contract.IMAGE_URL, initialValues);
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+        String table = tableForUri(uri);
+        long rowId;
+
+        if (sUriMatcher.match(uri) == URI_MATCHER_SYNC_STATE) {
+            // Sync state entries are keyed by name, so inserting one replaces any old value.
+            // Nobody observes them, so there is nothing to notify.
+            database.insertWithOnConflict(table, null, initialValues, SQLiteDatabase.CONFLICT_REPLACE);
+
+            return Uri.withAppendedPath(uri, initialValues.getAsString(Contract.STATE_NAME));
+        }
+
+        if (sUriMatcher.match(uri) == URI_MATCHER_PHOTO_VALIDATORS) {
+            // Likewise a photo's validators, which are keyed by founder and variant.
+            rowId = database.insertWithOnConflict(table, null, initialValues, SQLiteDatabase.CONFLICT_REPLACE);
+
+            return ContentUris.withAppendedId(uri, rowId);
+        }
+
+        if (table.equals(Contract.FOUNDER)) {
+            initialValues = withSortKey(initialValues, true);
+        }
+
+        mRows.beginWrite();
+
+        try {
+            if (table.equals(Contract.FOUNDER)) {
+                rowId = insertFounder(database, initialValues);
+            } else if (initialValues != null && initialValues.size() > 0) {
+                rowId = insertCompiled(database, table, initialValues);
+            } else {
+                rowId = database.insert(table, Contract.IMAGE_URL, initialValues);
+            }
+
+            mRows.invalidate(rowId);
+        } finally {
+            mRows.endWrite();
+        }
 
         if (rowId <= 0) {
             throw new SQLException("Failed insert: " + uri);
@@ -73,11 +340,8 @@ public class FounderProvider extends ContentProvider {
 
         // Now notify the resolver of the change so it can inform any listeners.
         Uri insertUri = ContentUris.withAppendedId(Contract.CONTENT_URI, rowId);
-        Context context = getContext();
 
-        if (context != null) {
-            context.getContentResolver().notifyChange(uri, null);
-        }
+        notifyChange(insertUri);
 
         return insertUri;
     }
@@ -86,173 +350,1937 @@ public class FounderProvider extends ContentProvider {
         int count;
         SQLiteDatabase database = mDatabase.getWritableDatabase();
         String table = tableForUri(uri);
+        Long id = idForWrite(uri, where, whereArgs);
 
-        // First attempt the delete or update operation.
-        if (values == null) {
-            // With no values this is a delete operation.
-            count = database.delete(table, where, whereArgs);
-        } else {
-            count = database.update(table, values, where, whereArgs);
+        if (values != null && table.equals(Contract.FOUNDER)) {
+            values = withSortKey(values, false);
+        }
+
+        mRows.beginWrite();
+
+        try {
+            // First attempt the delete or update operation.
+            if (table.equals(Contract.FOUNDER)) {
+                count = modifyFounder(database, values, where, whereArgs, id);
+            } else if (id != null && (values == null || values.size() > 0)) {
+                // Single-row writes are the bulk of sync's work, so they reuse compiled statements.
+                count = modifyCompiled(database, table, values, id);
+            } else if (values == null) {
+                // With no values this is a delete operation.
+                count = database.delete(table, where, whereArgs);
+            } else {
+                count = database.update(table, values, where, whereArgs);
+            }
+
+            // Forget the cached rows this may have changed, including any row it renumbered.
+            if (id != null) {
+                mRows.invalidate(id);
+
+                if (values != null && values.containsKey(Contract._ID)) {
+                    mRows.invalidate(values.getAsLong(Contract._ID));
+                }
+            } else if (table.equals(Contract.FOUNDER)) {
+                mRows.invalidateAll();
+            }
+        } finally {
+            mRows.endWrite();
         }
 
         // Then notify the resolver of the change so it can inform any listeners.
-        Context context = getContext();
+        if (count > 0) {
+            notifyChange(id != null ? ContentUris.withAppendedId(Contract.CONTENT_URI, id) : uri);
+        }
 
-        if (context != null) {
-            context.getContentResolver().notifyChange(uri, null);
+        return count;
+    }
+
+    /**
+     * Insert a founder's hot columns into the founder table and its cold columns into
+     * founder_cold, in one transaction.  Every founder gets a cold row, even an empty one,
+     * so founder_cold can always be updated by _id.
+     *
+     * @param database The writable database
+     * @param values The founder's values, including its sort key
+     * @return The new row ID
+     */
+    private long insertFounder(SQLiteDatabase database, ContentValues values) {
+        ContentValues hot = new ContentValues(values);
+        ContentValues cold = splitCold(hot);
+        long rowId;
+
+        database.beginTransaction();
+
+        try {
+            rowId = insertCompiled(database, Contract.FOUNDER, hot);
+
+            if (rowId > 0) {
+                cold.put(Contract._ID, rowId);
+                insertCompiled(database, Contract.FOUNDER_COLD, cold);
+            }
+
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        return rowId;
+    }
+
+    /**
+     * Update or delete founders, writing each of the founder and founder_cold tables
+     * only if the values touch its columns, in one transaction.  A general selection may
+     * name columns from either table, so we apply it to the founder_record view and write
+     * each table by _id.  Deleting a founder row takes its cold row with it, by trigger.
+     *
+     * @param database The writable database
+     * @param values The values to update, or null to delete
+     * @param where The caller's selection
+     * @param whereArgs The caller's selection arguments
+     * @param id The one founder targeted, from idForWrite(), or null
+     * @return The number of founders affected
+     */
+    private int modifyFounder(SQLiteDatabase database, ContentValues values, String where, String[] whereArgs,
+                              Long id) {
+        String selection = where != null ? Contract._ID + " IN (SELECT " + Contract._ID + " FROM " +
+                Contract.FOUNDER_RECORD + " WHERE " + where + ")" : null;
+        int count = 0;
+
+        if (values == null) {
+            if (id != null) {
+                return modifyCompiled(database, Contract.FOUNDER, null, id);
+            }
+
+            return database.delete(Contract.FOUNDER, selection, whereArgs);
+        }
+
+        ContentValues hot = new ContentValues(values);
+        ContentValues cold = splitCold(hot);
+
+        database.beginTransaction();
+
+        try {
+            if (id != null) {
+                // Hot first, so the cold change log trigger sees the row's new dirty flag;
+                // a renumbered row's cold half has followed it to its new _id by then.
+                if (hot.size() > 0) {
+                    count = modifyCompiled(database, Contract.FOUNDER, hot, id);
+                }
+
+                if (cold.size() > 0) {
+                    long coldId = hot.containsKey(Contract._ID) ? hot.getAsLong(Contract._ID) : id;
+
+                    count = Math.max(count, modifyCompiled(database, Contract.FOUNDER_COLD, cold, coldId));
+                }
+            } else {
+                // Cold first, as the hot update may change the columns the selection tests.
+                if (cold.size() > 0) {
+                    count = database.update(Contract.FOUNDER_COLD, cold, selection, whereArgs);
+                }
+
+                if (hot.size() > 0) {
+                    count = database.update(Contract.FOUNDER, hot, selection, whereArgs);
+                }
+            }
+
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
         }
 
         return count;
     }
 
+    /**
+     * Move the cold columns out of a set of founder values.  The version, if there is
+     * one, goes to both halves.
+     *
+     * @param values A founder's values, from which we remove every cold field
+     * @return The cold fields' values
+     */
+    private static ContentValues splitCold(ContentValues values) {
+        ContentValues cold = new ContentValues(values);
+        List<String> coldFields = Arrays.asList(COLD_FIELDS);
+
+        for (String key : new ArrayList<>(values.keySet())) {
+            if (key.equals(Contract.VERSION)) {
+                continue;
+            }
+
+            if (coldFields.contains(key)) {
+                values.remove(key);
+            } else {
+                cold.remove(key);
+            }
+        }
+
+        return cold;
+    }
+
+    /**
+     * Add the sort key and section derived from a founder's name to the values being
+     * written, so the list can order and section on indexed columns.
+     *
+     * @param values The values the caller is writing, which we leave untouched
+     * @param always True to add them even if the name isn't among the values, as on insert
+     * @return The values to write
+     */
+    private static ContentValues withSortKey(ContentValues values, boolean always) {
+        if (values == null) {
+            values = new ContentValues();
+        } else if (!always && !values.containsKey(Contract.PREFERRED_FULL_NAME)) {
+            return values;
+        } else {
+            values = new ContentValues(values);
+        }
+
+        String sortKey = SortKey.of(values.getAsString(Contract.PREFERRED_FULL_NAME));
+
+        values.put(Contract.SORT_KEY, sortKey);
+        values.put(Contract.SECTION, SortKey.sectionOf(sortKey));
+
+        return values;
+    }
+
+    /**
+     * Work out whether an update or delete targets exactly one founder by _id.
+     *
+     * @param uri The URI the caller used
+     * @param where The caller's selection
+     * @param whereArgs The caller's selection arguments
+     * @return The targeted _id, or null if the write may touch any number of rows
+     */
+    private Long idForWrite(Uri uri, String where, String[] whereArgs) {
+        try {
+            switch (sUriMatcher.match(uri)) {
+                case URI_MATCHER_FOUNDER_ID:
+                    if (TextUtils.isEmpty(where)) {
+                        return Long.parseLong(uri.getLastPathSegment());
+                    }
+                    break;
+                case URI_MATCHER_FOUNDERS:
+                    if (SELECTION_ID.equals(where) && whereArgs != null && whereArgs.length == 1) {
+                        return Long.parseLong(whereArgs[0]);
+                    }
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // Not an ID after all, so treat it as a general selection
+        }
+
+        return null;
+    }
+
+    /**
+     * Insert a row with a cached compiled statement for this set of columns.
+     *
+     * @param database The writable database
+     * @param table The table to insert into
+     * @param values The non-empty values to insert
+     * @return The new row ID
+     */
+    private long insertCompiled(SQLiteDatabase database, String table, ContentValues values) {
+        List<String> keys = sortedKeys(values);
+        StringBuilder sql = new StringBuilder("INSERT INTO " + table + " (");
+
+        sql.append(TextUtils.join(", ", keys)).append(") VALUES (");
+
+        for (int i = 0; i < keys.size(); i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+
+        sql.append(")");
+
+        String key = sql.toString();
+        SQLiteStatement statement = mStatements.acquire(database, key);
+
+        try {
+            bindValues(statement, keys, values);
+            return statement.executeInsert();
+        } finally {
+            mStatements.release(key, statement);
+        }
+    }
+
+    /**
+     * Update or delete a single row by _id with a cached compiled statement.
+     *
+     * @param database The writable database
+     * @param table The table to modify
+     * @param values The non-empty values to update, or null to delete
+     * @param id The _id of the row
+     * @return The number of rows affected
+     */
+    private int modifyCompiled(SQLiteDatabase database, String table, ContentValues values, long id) {
+        List<String> keys = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+
+        if (values == null) {
+            sql.append("DELETE FROM ").append(table);
+        } else {
+            keys = sortedKeys(values);
+            sql.append("UPDATE ").append(table).append(" SET ");
+            sql.append(TextUtils.join(" = ?, ", keys)).append(" = ?");
+        }
+
+        sql.append(" WHERE ").append(SELECTION_ID);
+
+        String key = sql.toString();
+        SQLiteStatement statement = mStatements.acquire(database, key);
+
+        try {
+            bindValues(statement, keys, values);
+            statement.bindLong(keys.size() + 1, id);
+            return statement.executeUpdateDelete();
+        } finally {
+            mStatements.release(key, statement);
+        }
+    }
+
+    /**
+     * @param values A set of column values
+     * @return The column names, sorted so equal column sets give identical SQL
+     */
+    private static List<String> sortedKeys(ContentValues values) {
+        List<String> keys = new ArrayList<>(values.keySet());
+
+        Collections.sort(keys);
+
+        return keys;
+    }
+
+    /**
+     * Bind the given columns' values, in order, starting at parameter 1.
+     *
+     * @param statement The compiled statement
+     * @param keys The column names, in parameter order
+     * @param values The column values
+     */
+    private static void bindValues(SQLiteStatement statement, List<String> keys, ContentValues values) {
+        for (int i = 0; i < keys.size(); i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, values.get(keys.get(i)));
+        }
+    }
+
+    /**
+     * Tell the resolver, through our coalescer, that content at the given URI has changed.
+     *
+     * @param uri The URI whose content changed
+     */
+    private void notifyChange(Uri uri) {
+        if (mNotifier != null) {
+            mNotifier.changed(uri);
+        }
+    }
+
+    /**
+     * Hold the change notifications for this thread's writes until a matching
+     * resumeNotifications().
+     */
+    private void suspendNotifications() {
+        if (mNotifier != null) {
+            mNotifier.suspend();
+        }
+    }
+
+    /**
+     * Undo one suspendNotifications(), sending what was held once none remain.
+     */
+    private void resumeNotifications() {
+        if (mNotifier != null) {
+            mNotifier.resume();
+        }
+    }
+
     @Override
     public boolean onCreate() {
         // We delegate creation to the helper.
-        mDatabase = new FounderDatabaseHelper(getContext());
+        Context context = getContext();
+
+        mDatabase = new FounderDatabaseHelper(context);
+
+        if (context != null) {
+            mNotifier = new NotificationCoalescer(context.getContentResolver(), Contract.CONTENT_URI);
+        }
+
+        return true;
+    }
+
+    /**
+     * Close the database, as a test does before it removes the database to start again
+     * as on a fresh install.  The next query or write opens it again.
+     */
+    @Override
+    public void shutdown() {
+        mDatabase.close();
+    }
+
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs, String sort) {
+        return query(uri, projection, selection, selectionArgs, sort, null);
+    }
+
+    /**
+     * Run a query that the caller can abandon part way, such as a loader's query that a
+     * newer one has superseded.  Cancelling stops SQLite at its next step, so the read
+     * connection is freed at once rather than when the scan would have finished; the
+     * call then throws OperationCanceledException.  Only Jelly Bean and later pass a
+     * signal, so on older devices every query runs to completion.
+     *
+     * @param cancellationSignal Signal to cancel the query, or null
+     */
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs, String sort,
+                        CancellationSignal cancellationSignal) {
+        // A best practice is to use a query builder to construct an actual query from the URI.
+        SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
+        Uri notificationUri = uri;
+        List<String> filterArgs = new ArrayList<>();
+        String orderBy = null;
+        String limit = null;
+
+        qb.setTables(queryTableForUri(uri));
+
+        if (!TextUtils.isEmpty(sort)) {
+            orderBy = sort;
+        }
+
+        switch (sUriMatcher.match(uri)) {
+            case URI_MATCHER_SEARCH:
+                return search(uri, cancellationSignal);
+            case URI_MATCHER_FACETS:
+                return facets(uri, cancellationSignal);
+            case URI_MATCHER_FOUNDER_ID:
+                if (TextUtils.isEmpty(selection)) {
+                    Cursor founder = queryFounder(ContentUris.parseId(uri), projection);
+
+                    if (founder != null) {
+                        setNotificationUri(founder, uri);
+                        return founder;
+                    }
+                }
+
+                qb.appendWhere(Contract._ID + " = " + ContentUris.parseId(uri));
+                break;
+            case URI_MATCHER_SUMMARY:
+                // Keep list cursors narrow so many more rows fit in each CursorWindow.
+                if (projection == null) {
+                    projection = Contract.summaryFields();
+                }
+
+                selection = appendFilters(uri, selection, filterArgs);
+
+                // Watch the whole collection so we also hear about changes to single rows.
+                notificationUri = Contract.CONTENT_URI;
+                break;
+            case URI_MATCHER_PAGE:
+                if (projection == null) {
+                    projection = Contract.summaryFields();
+                }
+
+                selection = appendFilters(uri, selection, filterArgs);
+
+                orderBy = appendPageWhere(qb, uri);
+                limit = uri.getQueryParameter(Contract.PARAM_LIMIT);
+                notificationUri = Contract.CONTENT_URI;
+                break;
+        }
+
+        // Note that we're not really performing the query per se, but rather building a Cursor that will
+        // iterate over all the query results.  We can use a read-only database here.
+        if (!filterArgs.isEmpty()) {
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    filterArgs.toArray(new String[filterArgs.size()]));
+        }
+
+        Cursor cursor = query(qb, projection, selection, selectionArgs, orderBy, limit, cancellationSignal);
+
+        // The cursor needs to know about the resolver so it can be informed of any changes while
+        // the cursor is active because changes could impact cursor results.
+        setNotificationUri(cursor, notificationUri);
+
+        return cursor;
+    }
+
+    /**
+     * Run a built query, passing the cancellation signal on if there is one.
+     *
+     * @param qb The query builder, with its tables and where clause set
+     * @param projection The columns wanted, or null for every column
+     * @param selection The selection, or null
+     * @param selectionArgs The selection arguments, or null
+     * @param orderBy The ORDER BY clause, or null
+     * @param limit The LIMIT clause, or null
+     * @param cancellationSignal Signal to cancel the query, or null
+     * @return The cursor
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Cursor query(SQLiteQueryBuilder qb, String[] projection, String selection, String[] selectionArgs,
+                         String orderBy, String limit, CancellationSignal cancellationSignal) {
+        SQLiteDatabase database = mDatabase.getReadableDatabase();
+
+        if (cancellationSignal == null) {
+            return qb.query(database, projection, selection, selectionArgs, null, null, orderBy, limit);
+        }
+
+        return qb.query(database, projection, selection, selectionArgs, null, null, orderBy, limit,
+                cancellationSignal);
+    }
+
+    /**
+     * Run a raw query, passing the cancellation signal on if there is one.
+     *
+     * @param sql The query
+     * @param args The query's arguments, or null
+     * @param cancellationSignal Signal to cancel the query, or null
+     * @return The cursor
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Cursor rawQuery(String sql, String[] args, CancellationSignal cancellationSignal) {
+        SQLiteDatabase database = mDatabase.getReadableDatabase();
+
+        if (cancellationSignal == null) {
+            return database.rawQuery(sql, args);
+        }
+
+        return database.rawQuery(sql, args, cancellationSignal);
+    }
+
+    /**
+     * Add the facet filters in a list URI's query parameters to a selection.  Each filter
+     * is an equality test on one of Contract.facetFields(), which the facet indexes serve
+     * in sort_key order.  An empty value matches rows with no value.
+     *
+     * @param uri A list URI, possibly built with Contract.withFilter()
+     * @param selection The caller's selection, or null
+     * @param args List to which we append the filters' selection arguments
+     * @return The combined selection, or null if there is none
+     */
+    private static String appendFilters(Uri uri, String selection, List<String> args) {
+        for (String facet : Contract.facetFields()) {
+            String value = uri.getQueryParameter(facet);
+
+            if (value == null) {
+                continue;
+            }
+
+            if (value.isEmpty()) {
+                selection = DatabaseUtils.concatenateWhere(selection, facet + " IS NULL OR " + facet + " = ''");
+            } else {
+                selection = DatabaseUtils.concatenateWhere(selection, facet + " = ?");
+                args.add(value);
+            }
+        }
+
+        return selection;
+    }
+
+    /**
+     * Count the founders having each value of each facet.  With no filters this reads
+     * the counts the facet triggers keep, without touching the founder table.  With
+     * filters it counts just the filtered founders, whom the facet indexes find directly.
+     *
+     * @param uri The facets URI, possibly built with Contract.withFilter()
+     * @param cancellationSignal Signal to cancel the query, or null
+     * @return A cursor of facet, value and count rows, ordered by facet and value
+     */
+    private Cursor facets(Uri uri, CancellationSignal cancellationSignal) {
+        List<String> args = new ArrayList<>();
+        String filters = appendFilters(uri, null, args);
+        String columns = Contract.FACET + ", " + Contract.FACET_VALUE + ", " + Contract.FACET_COUNT;
+        String order = " ORDER BY " + Contract.FACET + ", " + Contract.FACET_VALUE;
+        Cursor cursor;
+
+        if (filters == null) {
+            cursor = rawQuery("SELECT " + columns + " FROM " + Contract.FOUNDER_FACETS + order, null,
+                    cancellationSignal);
+        } else {
+            List<String> counts = new ArrayList<>();
+            List<String> countArgs = new ArrayList<>();
+
+            for (String facet : Contract.facetFields()) {
+                counts.add("SELECT '" + facet + "' AS " + Contract.FACET + ", IFNULL(" + facet + ", '') AS " +
+                        Contract.FACET_VALUE + ", COUNT(*) AS " + Contract.FACET_COUNT + " FROM " +
+                        Contract.FOUNDER + " WHERE " + filters + " GROUP BY 2");
+                countArgs.addAll(args);
+            }
+
+            cursor = rawQuery(TextUtils.join(" UNION ALL ", counts) + order,
+                    countArgs.toArray(new String[countArgs.size()]), cancellationSignal);
+        }
+
+        setNotificationUri(cursor, Contract.CONTENT_URI);
+
+        return cursor;
+    }
+
+    /**
+     * Look up one founder, from the row cache if we can.  On a miss we read every column
+     * with a bound _id and cache the row for next time.
+     *
+     * @param id The founder's _id
+     * @param projection The columns wanted, or null for every column
+     * @return A cursor of at most one row, or null if the projection asks for something
+     *         other than plain founder columns
+     */
+    private Cursor queryFounder(long id, String[] projection) {
+        Cursor cursor = mRows.get(id, projection);
+
+        if (cursor == null) {
+            long generation = mRows.getGeneration();
+            Cursor row = mDatabase.getReadableDatabase().rawQuery(SQL_FOUNDER_BY_ID,
+                    new String[] { Long.toString(id) });
+
+            try {
+                if (row.moveToFirst()) {
+                    cursor = mRows.put(id, row, generation, projection);
+                } else {
+                    cursor = new MatrixCursor(projection != null ? projection : row.getColumnNames(), 0);
+                }
+            } finally {
+                row.close();
+            }
+        }
+
+        return cursor;
+    }
+
+    /**
+     * Register a cursor with the resolver so it hears about changes at the given URI.
+     *
+     * @param cursor The cursor we're returning
+     * @param uri The URI whose changes affect its results
+     */
+    private void setNotificationUri(Cursor cursor, Uri uri) {
+        Context context = getContext();
+
+        if (context != null) {
+            cursor.setNotificationUri(context.getContentResolver(), uri);
+        }
+    }
+
+    /**
+     * Restrict a page query to the rows that sort after the page's "after" key, using
+     * keyset pagination: we seek straight to (sort key, _id) in the sort index instead
+     * of counting past an OFFSET, so every page costs the same however deep it is.
+     * NULL keys sort first (only rows written before sort keys existed can have one),
+     * so a NULL "after" means we're still among the NULLs.
+     *
+     * @param qb The query builder to restrict
+     * @param uri A page URI, as built by Contract.pageUri()
+     * @return The ORDER BY clause for the page
+     */
+    private String appendPageWhere(SQLiteQueryBuilder qb, Uri uri) {
+        String sortKey = uri.getQueryParameter(Contract.PARAM_SORT);
+        String after = uri.getQueryParameter(Contract.PARAM_AFTER);
+        String afterId = uri.getQueryParameter(Contract.PARAM_AFTER_ID);
+
+        if (sortKey == null) {
+            sortKey = Contract.SORT_KEY;
+        } else if (!sortKey.equals(Contract.SORT_KEY)) {
+            throw new IllegalArgumentException("Unsupported page sort key: " + sortKey);
+        }
+
+        if (afterId != null) {
+            long id = Long.parseLong(afterId);
+
+            if (after == null) {
+                qb.appendWhere("(" + sortKey + " IS NOT NULL OR " + Contract._ID + " > " + id + ")");
+            } else {
+                // The >= bound lets SQLite seek in the index; the OR just skips ties we've seen.
+                qb.appendWhere(sortKey + " >= ");
+                qb.appendWhereEscapeString(after);
+                qb.appendWhere(" AND (" + sortKey + " > ");
+                qb.appendWhereEscapeString(after);
+                qb.appendWhere(" OR " + Contract._ID + " > " + id + ")");
+            }
+        }
+
+        return sortKey + ", " + Contract._ID;
+    }
+
+    /**
+     * Insert or update full Founder records in one transaction.  Each record runs the
+     * compiled update-by-_id statement and, only when that matched no row, the compiled
+     * insert statement, once for the founder table and once for founder_cold.  SQLite on
+     * our oldest supported devices predates INSERT ... ON CONFLICT DO UPDATE, and INSERT
+     * OR REPLACE would both reset the local flag columns and skip the delete triggers that
+     * keep the search index in step.  The same transaction deletes the given founders and
+     * records the given sync state, so the state can never claim a batch that didn't
+     * commit.
+     *
+     * @param founders Records holding _id and every field in Contract.allFieldsIdVersion(), or null
+     * @param deleteIds IDs of founders to delete, or null
+     * @param state Sync state entries to set, keyed by name, or null
+     * @return The number of records written or deleted
+     */
+    private int upsert(List<ContentValues> founders, long[] deleteIds, ContentValues state) {
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+        SQLiteStatement update = mStatements.acquire(database, SQL_UPSERT_UPDATE);
+        SQLiteStatement insert = mStatements.acquire(database, SQL_UPSERT_INSERT);
+        SQLiteStatement coldUpdate = mStatements.acquire(database, SQL_UPSERT_COLD_UPDATE);
+        SQLiteStatement coldInsert = mStatements.acquire(database, SQL_UPSERT_COLD_INSERT);
+        int count = 0;
+
+        if (founders == null) {
+            founders = Collections.emptyList();
+        }
+
+        suspendNotifications();
+        mRows.beginWrite();
+        database.beginTransaction();
+
+        try {
+            if (deleteIds != null) {
+                for (long id : deleteIds) {
+                    mRows.invalidate(id);
+
+                    if (modifyCompiled(database, Contract.FOUNDER, null, id) > 0) {
+                        notifyChange(ContentUris.withAppendedId(Contract.CONTENT_URI, id));
+                        ++count;
+                    }
+                }
+            }
+
+            for (ContentValues values : founders) {
+                ContentValues founder = withSortKey(values, true);
+
+                updateOrInsert(update, insert, HOT_FIELDS, founder);
+                updateOrInsert(coldUpdate, coldInsert, COLD_FIELDS, founder);
+
+                mRows.invalidate(values.getAsLong(Contract._ID));
+                notifyChange(ContentUris.withAppendedId(Contract.CONTENT_URI, values.getAsLong(Contract._ID)));
+                ++count;
+            }
+
+            writeSyncState(database, state);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            mRows.endWrite();
+            mStatements.release(SQL_UPSERT_UPDATE, update);
+            mStatements.release(SQL_UPSERT_INSERT, insert);
+            mStatements.release(SQL_UPSERT_COLD_UPDATE, coldUpdate);
+            mStatements.release(SQL_UPSERT_COLD_INSERT, coldInsert);
+            resumeNotifications();
+        }
+
+        return count;
+    }
+
+    /**
+     * Run one pass of database maintenance within a time budget.
+     *
+     * @param budgetMillis How long the pass may run, in milliseconds
+     * @param allowRebuild True if the pass may run the one-time full VACUUM
+     * @return The pass's report: rows removed, and size and free space before and after
+     */
+    private Bundle maintain(long budgetMillis, boolean allowRebuild) {
+        Maintenance maintenance = new Maintenance(mDatabase.getWritableDatabase(), budgetMillis, allowRebuild);
+        Bundle report = new Bundle();
+
+        mRows.beginWrite();
+
+        try {
+            maintenance.run();
+
+            if (maintenance.getFoundersRemoved() > 0) {
+                mRows.invalidateAll();
+            }
+        } finally {
+            mRows.endWrite();
+        }
+
+        if (maintenance.getFoundersRemoved() > 0) {
+            notifyChange(Contract.CONTENT_URI);
+        }
+
+        report.putInt(Contract.EXTRA_COUNT, maintenance.getRowsRemoved());
+        report.putLong(Contract.EXTRA_SIZE_BEFORE, maintenance.getSizeBefore());
+        report.putLong(Contract.EXTRA_SIZE_AFTER, maintenance.getSizeAfter());
+        report.putLong(Contract.EXTRA_FREE_BEFORE, maintenance.getFreeBefore());
+        report.putLong(Contract.EXTRA_FREE_AFTER, maintenance.getFreeAfter());
+
+        return report;
+    }
+
+    /**
+     * Copy the founders from a downloaded snapshot into the database.  We inflate it into
+     * our cache directory, bring it to our schema version with the same migrations as
+     * founders.db, and upsert its founders a batch at a time.  The last batch also sets
+     * the server version the snapshot holds, so if we're stopped part way, delta sync
+     * starts from our old version and rewrites whatever we'd copied.  We don't ATTACH
+     * the snapshot, because attaching a database turns off write-ahead logging for the
+     * life of the connection pool.  Local edits still waiting to sync would be overwritten,
+     * so we refuse the snapshot while there are any, as we do one older than our data.
+     *
+     * @param compressed The gzip-compressed snapshot file
+     * @return The number of founders imported
+     */
+    private int importSnapshot(File compressed) {
+        Context context = getContext();
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+
+        if (context == null || DatabaseUtils.queryNumEntries(database, Contract.FOUNDER_CHANGES) > 0) {
+            return 0;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        File file = new File(context.getCacheDir(), Contract.FOUNDER + "_snapshot.db");
+        String versionQuery = "SELECT " + Contract.STATE_VALUE + " FROM " + Contract.SYNC_STATE + " WHERE " +
+                Contract.STATE_NAME + " = '" + Contract.STATE_SERVER_VERSION + "'";
+        SQLiteDatabase snapshot = null;
+        int count = 0;
+
+        try {
+            Snapshot.inflate(new FileInputStream(compressed), file);
+            snapshot = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            mDatabase.upgradeSnapshot(snapshot);
+
+            String version = DatabaseUtils.stringForQuery(snapshot, versionQuery, null);
+
+            if (Long.parseLong(version) <= DatabaseUtils.longForQuery(database, versionQuery, null)) {
+                return 0;
+            }
+
+            ContentValues state = new ContentValues();
+            String lastId = Long.toString(Long.MIN_VALUE);
+            List<ContentValues> batch;
+
+            state.put(Contract.STATE_SERVER_VERSION, version);
+
+            // Reload the list once, as soon as the last batch commits, not once per batch.
+            suspendNotifications();
+
+            try {
+                do {
+                    batch = readSnapshot(snapshot, lastId);
+
+                    if (!batch.isEmpty()) {
+                        lastId = batch.get(batch.size() - 1).getAsString(Contract._ID);
+                    }
+
+                    count += upsert(batch, null, batch.size() < SNAPSHOT_BATCH_SIZE ? state : null);
+                } while (batch.size() == SNAPSHOT_BATCH_SIZE);
+            } finally {
+                resumeNotifications();
+            }
+
+            Log.i(TAG, "importSnapshot: " + count + " founders at version " + version + " in " +
+                    (SystemClock.elapsedRealtime() - start) + " ms");
+        } catch (IOException | SQLException | NumberFormatException e) {
+            Log.w(TAG, "importSnapshot: unable to import " + compressed + ": " + e);
+        } finally {
+            if (snapshot != null) {
+                snapshot.close();
+            }
+
+            file.delete();
+            new File(file.getPath() + "-journal").delete();
+        }
+
+        return count;
+    }
+
+    /**
+     * Read the next batch of live founders from a snapshot, in _id order.
+     *
+     * @param snapshot The open snapshot, at our schema version
+     * @param afterId The _id of the last founder already read
+     * @return Up to SNAPSHOT_BATCH_SIZE whole Founder records
+     */
+    private static List<ContentValues> readSnapshot(SQLiteDatabase snapshot, String afterId) {
+        List<ContentValues> founders = new ArrayList<>();
+        Cursor cursor = snapshot.rawQuery("SELECT * FROM " + Contract.FOUNDER_RECORD + " WHERE " +
+                Contract._ID + " > ? AND NOT IFNULL(" + Contract.DELETED + ", 0) ORDER BY " + Contract._ID +
+                " LIMIT " + SNAPSHOT_BATCH_SIZE, new String[] { afterId });
+
+        try {
+            while (cursor.moveToNext()) {
+                ContentValues values = new ContentValues();
+
+                DatabaseUtils.cursorRowToContentValues(cursor, values);
+                founders.add(values);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return founders;
+    }
+
+    /**
+     * Set sync state entries in one transaction.
+     *
+     * @param state Sync state entries to set, keyed by name
+     */
+    private void setSyncState(ContentValues state) {
+        SQLiteDatabase database = mDatabase.getWritableDatabase();
+
+        database.beginTransaction();
+
+        try {
+            writeSyncState(database, state);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Write sync state entries within the caller's transaction.
+     *
+     * @param database The writable database
+     * @param state Sync state entries to set, keyed by name, or null
+     */
+    private void writeSyncState(SQLiteDatabase database, ContentValues state) {
+        if (state == null || state.size() == 0) {
+            return;
+        }
+
+        SQLiteStatement statement = mStatements.acquire(database, SQL_SYNC_STATE);
+
+        try {
+            for (String name : state.keySet()) {
+                statement.bindString(1, name);
+                DatabaseUtils.bindObjectToProgram(statement, 2, state.get(name));
+                statement.executeInsert();
+            }
+        } finally {
+            mStatements.release(SQL_SYNC_STATE, statement);
+        }
+    }
+
+    /**
+     * @return The Founder fields kept in the founder table, other than _id, in the order
+     *         of Contract.allFieldsIdVersion(), then the sort key and section
+     */
+    private static String[] hotFields() {
+        List<String> fields = new ArrayList<>(Arrays.asList(Contract.allFieldsIdVersion()));
+
+        fields.remove(Contract._ID);
+        fields.removeAll(Arrays.asList(Contract.coldFields()));
+        fields.add(Contract.SORT_KEY);
+        fields.add(Contract.SECTION);
+
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * @return The Founder fields kept in founder_cold, other than _id, then the version,
+     *         which founder_cold copies so its change log trigger can tell a local edit
+     *         from a server write
+     */
+    private static String[] coldFields() {
+        List<String> fields = new ArrayList<>(Arrays.asList(Contract.coldFields()));
+
+        fields.add(Contract.VERSION);
+
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Build the SQL for one half of an upsert into one of the founder tables.  Both
+     * statements bind the given fields first, in order, and the _id last.
+     *
+     * @param table The table to write
+     * @param fields The fields to write, without _id
+     * @param isUpdate True for the update-by-_id statement, false for the insert
+     * @return The statement text
+     */
+    private static String upsertSql(String table, String[] fields, boolean isUpdate) {
+        StringBuilder sql = new StringBuilder();
+        StringBuilder parameters = new StringBuilder();
+
+        sql.append(isUpdate ? "UPDATE " + table + " SET " : "INSERT INTO " + table + " (");
+
+        for (String field : fields) {
+            sql.append(field).append(isUpdate ? " = ?, " : ", ");
+            parameters.append("?, ");
+        }
+
+        if (isUpdate) {
+            sql.setLength(sql.length() - 2);
+            sql.append(" WHERE ").append(SELECTION_ID);
+        } else {
+            sql.append(Contract._ID).append(") VALUES (").append(parameters).append("?)");
+        }
+
+        return sql.toString();
+    }
+
+    /**
+     * Write one table's half of a Founder record: update its row by _id, or insert
+     * the row if there isn't one yet.
+     *
+     * @param update The compiled update statement from upsertSql()
+     * @param insert The matching compiled insert statement
+     * @param fields The fields the statements were built with
+     * @param values The Founder record
+     */
+    private static void updateOrInsert(SQLiteStatement update, SQLiteStatement insert, String[] fields,
+                                       ContentValues values) {
+        bindFounder(update, fields, values);
+
+        if (update.executeUpdateDelete() <= 0) {
+            bindFounder(insert, fields, values);
+            insert.executeInsert();
+        }
+    }
+
+    /**
+     * Bind a Founder record to an upsert statement: the given fields in order, then _id.
+     *
+     * @param statement The compiled statement
+     * @param fields The fields the statement was built with
+     * @param values The Founder record
+     */
+    private static void bindFounder(SQLiteStatement statement, String[] fields, ContentValues values) {
+        statement.clearBindings();
+
+        for (int i = 0; i < fields.length; i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, values.get(fields[i]));
+        }
+
+        DatabaseUtils.bindObjectToProgram(statement, fields.length + 1, values.get(Contract._ID));
+    }
+
+    /**
+     * Run a full-text search for the text in the last segment of the URI.  Every word
+     * is matched as a prefix, and rows are ranked by how many of the hits fall in the
+     * more important columns (names above organization and job above biography),
+     * scaled by how rare each word is across the directory.
+     *
+     * @param uri A search URI, as built by Contract.searchUri()
+     * @param cancellationSignal Signal to cancel the search, or null
+     * @return A cursor of _id, preferred_full_name and snippet rows, best match first
+     */
+    private Cursor search(Uri uri, CancellationSignal cancellationSignal) {
+        MatrixCursor results = new MatrixCursor(new String[] {
+                Contract._ID, Contract.PREFERRED_FULL_NAME, Contract.SNIPPET
+        });
+        StringBuilder match = new StringBuilder();
+
+        for (String word : uri.getLastPathSegment().toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                match.append(word).append("* ");
+            }
+        }
+
+        if (match.length() > 0) {
+            Cursor hits = rawQuery("SELECT docid, " +
+                    Contract.PREFERRED_FULL_NAME + ", snippet(" + Contract.FOUNDER_SEARCH +
+                    ", '<b>', '</b>', '...', -1, 12), matchinfo(" + Contract.FOUNDER_SEARCH + ") FROM " +
+                    Contract.FOUNDER_SEARCH + " WHERE " + Contract.FOUNDER_SEARCH + " MATCH ?",
+                    new String[] { match.toString().trim() }, cancellationSignal);
+            List<SearchHit> ranked = new ArrayList<>();
+
+            try {
+                while (hits.moveToNext()) {
+                    // We rank every hit before returning any, so check between rows too.
+                    if (cancellationSignal != null) {
+                        cancellationSignal.throwIfCanceled();
+                    }
+
+                    ranked.add(new SearchHit(hits.getLong(0), hits.getString(1), hits.getString(2),
+                            rank(hits.getBlob(3))));
+                }
+            } finally {
+                hits.close();
+            }
+
+            Collections.sort(ranked, new Comparator<SearchHit>() {
+                @Override
+                public int compare(SearchHit lhs, SearchHit rhs) {
+                    return Double.compare(rhs.score, lhs.score);
+                }
+            });
+
+            for (SearchHit hit : ranked) {
+                results.addRow(new Object[] { hit.id, hit.name, hit.snippet });
+            }
+        }
+
+        setNotificationUri(results, Contract.CONTENT_URI);
+
+        return results;
+    }
+
+    /**
+     * Compute a relevance score from the default ("pcx") FTS matchinfo blob.
+     *
+     * @param matchInfo The matchinfo() value for one row
+     * @return The weighted score for the row
+     */
+    private static double rank(byte[] matchInfo) {
+        ByteBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+        double score = 0.0;
+
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns && column < SEARCH_WEIGHTS.length; column++) {
+                int offset = 4 * (2 + 3 * (phrase * columns + column));
+                int rowHits = info.getInt(offset);
+                int allHits = info.getInt(offset + 4);
+
+                if (rowHits > 0) {
+                    score += SEARCH_WEIGHTS[column] * rowHits / allHits;
+                }
+            }
+        }
+
+        return score;
+    }
+
+    /**
+     * Determine which table we should use for a given URI.
+     *
+     * @param uri A URI corresponding to this provider
+     * @return The table name needed for a CRUD operation based on this URI
+     */
+    private String tableForUri(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case URI_MATCHER_SYNC_STATE:
+                return Contract.SYNC_STATE;
+            case URI_MATCHER_CHANGES:
+                return Contract.FOUNDER_CHANGES;
+            case URI_MATCHER_PHOTO_VALIDATORS:
+                return Contract.PHOTO_VALIDATOR;
+            case URI_MATCHER_FOUNDERS:
+            case URI_MATCHER_FOUNDER_ID:
+            default:
+                return Contract.FOUNDER;
+        }
+    }
+
+    /**
+     * Find the table or view to read for a URI.  Whole founder records come from the
+     * founder_record view; the list reads the founder table alone.
+     *
+     * @param uri A URI corresponding to this provider
+     * @return The table or view name needed for a query based on this URI
+     */
+    private String queryTableForUri(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case URI_MATCHER_FOUNDERS:
+            case URI_MATCHER_FOUNDER_ID:
+                return Contract.FOUNDER_RECORD;
+            default:
+                return tableForUri(uri);
+        }
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, ContentValues values, String where, String[] whereArgs) {
+        return modify(uri, values, where, whereArgs);
+    }
+
+    /**
+     * One row of a full-text search result, waiting to be ranked.
+     */
+    private static class SearchHit {
+        final long id;
+        final String name;
+        final String snippet;
+        final double score;
+
+        SearchHit(long id, String name, String snippet, double score) {
+            this.id = id;
+            this.name = name;
+            this.snippet = snippet;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Database helper to create a CET Founders SQLite3 database.
+     */
+    public class FounderDatabaseHelper extends SQLiteOpenHelper {
+        /**
+         * Database filename.
+         */
+        private static final String DATABASE_NAME = "founders.db";
+
+        /**
+         * Database version.
+         */
+        static final int DATABASE_VERSION = 14;
+
+        /**
+         * Number of WAL pages after which SQLite checkpoints on its own after a commit.
+         */
+        private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+        /**
+         * Oldest database version we know how to migrate.  Older databases are rebuilt.
+         */
+        static final int BASE_VERSION = 5;
+
+        // Index names
+        private static final String INDEX_NAME = "founder_name_index";
+        private static final String INDEX_SORT_KEY = "founder_sort_key_index";
+        private static final String INDEX_VERSION = "founder_version_index";
+        private static final String INDEX_DIRTY = "founder_dirty_index";
+        private static final String INDEX_NEW = "founder_new_index";
+        private static final String INDEX_DELETED = "founder_deleted_index";
+
+        /**
+         * Column list of the facet count table, for inserts.
+         */
+        private static final String FACET_COLUMNS = " (" + Contract.FACET + ", " + Contract.FACET_VALUE + ", " +
+                Contract.FACET_COUNT + ") ";
+
+        /**
+         * Start of the statement that appends a change log entry.
+         */
+        private static final String CHANGE_LOG_INSERT = "INSERT INTO " + Contract.FOUNDER_CHANGES + " (" +
+                Contract.FOUNDER_ID + ", " + Contract.OPERATION + ", " + Contract.CHANGED_COLUMNS + ") ";
+
+        /**
+         * The context whose database and assets we use, or null.
+         */
+        private final Context mContext;
+
+        /**
+         * True once we've checked for, and if need be put in place, the seed snapshot.
+         */
+        private boolean mSeeded = false;
+
+        /**
+         * Normal constructor.
+         *
+         * @param context The context in which this content provider operates
+         */
+        public FounderDatabaseHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+            mContext = context;
+
+            // With write-ahead logging, the list can keep reading on pooled connections
+            // while sync writes, rather than waiting behind the writer's lock.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                setWriteAheadLoggingEnabled(true);
+            }
+        }
+
+        // The provider is created on the main thread, so we seed when the database is
+        // first opened, which happens on the thread of the first query or write instead.
+        @Override
+        public synchronized SQLiteDatabase getWritableDatabase() {
+            seedFromAsset();
+            return super.getWritableDatabase();
+        }
+
+        @Override
+        public synchronized SQLiteDatabase getReadableDatabase() {
+            seedFromAsset();
+            return super.getReadableDatabase();
+        }
+
+        /**
+         * On a fresh install, put the snapshot from our assets, if this build has one,
+         * where SQLite will open it as founders.db.  We then upgrade it like any older
+         * database, and delta sync carries on from the server version recorded in it,
+         * so the first list shows without waiting for the whole directory to download.
+         * Only the first call does anything.
+         */
+        private void seedFromAsset() {
+            if (mSeeded || mContext == null) {
+                return;
+            }
+
+            mSeeded = true;
+
+            File file = mContext.getDatabasePath(DATABASE_NAME);
+
+            if (file.exists()) {
+                return;
+            }
+
+            try {
+                InputStream asset = mContext.getAssets().open(Snapshot.ASSET);
+
+                file.getParentFile().mkdirs();
+                Snapshot.inflate(asset, file);
+            } catch (FileNotFoundException e) {
+                // No snapshot in this build, so we start empty and sync fills it.
+            } catch (IOException e) {
+                Log.w(TAG, "seedFromAsset: " + e);
+            }
+        }
+
+        /**
+         * Bring a snapshot to our schema version with the same steps that upgrade
+         * founders.db, so that we can read it with our own queries.
+         *
+         * @param snapshot The open snapshot database
+         * @throws SQLException If we can't upgrade from the snapshot's version
+         */
+        public void upgradeSnapshot(SQLiteDatabase snapshot) {
+            int version = snapshot.getVersion();
+
+            if (version < BASE_VERSION || version > DATABASE_VERSION) {
+                throw new SQLException("No migration from snapshot version " + version);
+            }
+
+            snapshot.beginTransaction();
+
+            try {
+                Migration.migrate(snapshot, version, DATABASE_VERSION, mMigrations);
+                snapshot.setVersion(DATABASE_VERSION);
+                snapshot.setTransactionSuccessful();
+            } finally {
+                snapshot.endTransaction();
+            }
+        }
+
+        /**
+         * Copy committed pages from the write-ahead log back into the database.  This is
+         * a passive checkpoint, so it never waits for readers and never blocks them; call
+         * it after a burst of writes so the log doesn't keep growing between automatic
+         * checkpoints.
+         */
+        public void checkpoint() {
+            pragma(getWritableDatabase(), "wal_checkpoint(PASSIVE)");
+        }
+
+        /**
+         * Run a PRAGMA statement.  Some pragmas return a row, which execSQL refuses, so
+         * we run them as queries and discard the result.
+         *
+         * @param db The database to use
+         * @param pragma The pragma and its argument, without the PRAGMA keyword
+         */
+        private void pragma(SQLiteDatabase db, String pragma) {
+            Cursor result = db.rawQuery("PRAGMA " + pragma, null);
+
+            try {
+                result.moveToFirst();
+            } finally {
+                result.close();
+            }
+        }
+
+        /**
+         * Schema history, oldest step first.  To change the schema, bump DATABASE_VERSION
+         * and append a step here; never edit a step that has shipped, because it is also
+         * what builds a fresh database.
+         */
+        private final Migration[] mMigrations = {
+                new Migration(6) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        createIndexes(db);
+                    }
+                },
+                new Migration(7) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        createSearchIndex(db);
+                    }
+                },
+                new Migration(8) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        createSyncState(db);
+                    }
+                },
+                new Migration(9) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        createChangeLog(db);
+                    }
+                },
+                new Migration(10) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        createFacets(db);
+                    }
+                },
+                new Migration(11) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        createSortKeys(db);
+                    }
+                },
+                new Migration(12) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        splitColdColumns(db);
+                    }
+                },
+                new Migration(13) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        createPhotoValidators(db);
+                    }
+                },
+                new Migration(14) {
+                    @Override
+                    public void migrate(SQLiteDatabase db) {
+                        addColdVersion(db);
+                    }
+                }
+        };
+
+        /**
+         * @return The schema history, oldest step first
+         */
+        Migration[] getMigrations() {
+            return mMigrations;
+        }
+
+        /**
+         * Create the founder table as it was at BASE_VERSION.
+         *
+         * @param db The database to modify
+         */
+        void initDatabase(SQLiteDatabase db) {
+            String create = "CREATE TABLE ";
+            String idField = BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, ";
+
+            // Create the match table
+            db.execSQL(create + Contract.FOUNDER + " (" + idField + //
+                    Contract.GIVEN_NAMES + " TEXT, " + //
+                    Contract.SURNAMES + " TEXT, " + //
+                    Contract.PREFERRED_FIRST_NAME + " TEXT, " + //
+                    Contract.PREFERRED_FULL_NAME + " TEXT, " + //
+                    Contract.CELL + " TEXT, " + //
+                    Contract.EMAIL + " TEXT, " + //
+                    Contract.WEB_SITE + " TEXT, " + //
+                    Contract.LINKED_IN + " TEXT, " + //
+                    Contract.BIOGRAPHY + " TEXT, " + //
+                    Contract.EXPERTISE + " TEXT, " + //
+                    Contract.SPOUSE_GIVEN_NAMES + " TEXT, " + //
+                    Contract.SPOUSE_SURNAMES + " TEXT, " + //
+                    Contract.SPOUSE_PREFERRED_FIRST_NAME + " TEXT, " + //
+                    Contract.SPOUSE_PREFERRED_FULL_NAME + " TEXT, " + //
+                    Contract.SPOUSE_CELL + " TEXT, " + //
+                    Contract.SPOUSE_EMAIL + " TEXT, " + //
+                    Contract.STATUS + " TEXT, " + //
+                    Contract.YEAR_JOINED + " TEXT, " + //
+                    Contract.HOME_ADDRESS1 + " TEXT, " + //
+                    Contract.HOME_ADDRESS2 + " TEXT, " + //
+                    Contract.HOME_CITY + " TEXT, " + //
+                    Contract.HOME_STATE + " TEXT, " + //
+                    Contract.HOME_POSTAL_CODE + " TEXT, " + //
+                    Contract.HOME_COUNTRY + " TEXT, " + //
+                    Contract.ORGANIZATION_NAME + " TEXT, " + //
+                    Contract.JOB_TITLE + " TEXT, " + //
+                    Contract.WORK_ADDRESS1 + " TEXT, " + //
+                    Contract.WORK_ADDRESS2 + " TEXT, " + //
+                    Contract.WORK_CITY + " TEXT, " + //
+                    Contract.WORK_STATE + " TEXT, " + //
+                    Contract.WORK_POSTAL_CODE + " TEXT, " + //
+                    Contract.WORK_COUNTRY + " TEXT, " + //
+                    Contract.MAILING_ADDRESS1 + " TEXT, " + //
+                    Contract.MAILING_ADDRESS2 + " TEXT, " + //
+                    Contract.MAILING_CITY + " TEXT, " + //
+                    Contract.MAILING_STATE + " TEXT, " + //
+                    Contract.MAILING_POSTAL_CODE + " TEXT, " + //
+                    Contract.MAILING_COUNTRY + " TEXT, " + //
+                    Contract.MAILING_SAME_AS + " TEXT, " + //
+                    Contract.IMAGE_URL + " TEXT, " + //
+                    Contract.SPOUSE_IMAGE_URL + " TEXT, " + //
+                    Contract.VERSION + " INTEGER, " + //
+                    Contract.DELETED + " INTEGER, " + //
+                    Contract.DIRTY + " INTEGER, " + //
+                    Contract.NEW + " INTEGER " + //
+                    ");");
+        }
+
+        /**
+         * Create the secondary indexes used by the list and by sync.  The flag indexes
+         * are partial indexes covering only the flagged rows, ordered by version just as
+         * SyncService reads them.  Partial indexes need SQLite 3.8.0 (Lollipop), so on
+         * older devices we fall back to full indexes on the flag columns.
+         *
+         * @param db The database to modify
+         */
+        private void createIndexes(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + Contract.FOUNDER + " (" +
+                    Contract.PREFERRED_FULL_NAME + ")");
+            createSyncIndexes(db);
+        }
+
+        /**
+         * Create the version index and the flag indexes that sync reads by.
+         *
+         * @param db The database to modify
+         */
+        private void createSyncIndexes(SQLiteDatabase db) {
+            String create = "CREATE INDEX IF NOT EXISTS ";
+            String on = " ON " + Contract.FOUNDER + " (";
+
+            db.execSQL(create + INDEX_VERSION + on + Contract.VERSION + ")");
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                db.execSQL(create + INDEX_DIRTY + on + Contract.VERSION + ") WHERE " + Contract.SELECTION_DIRTY);
+                db.execSQL(create + INDEX_NEW + on + Contract.VERSION + ") WHERE " + Contract.SELECTION_NEW);
+                db.execSQL(create + INDEX_DELETED + on + Contract.VERSION + ") WHERE " + Contract.SELECTION_DELETED);
+            } else {
+                db.execSQL(create + INDEX_DIRTY + on + Contract.DIRTY + ", " + Contract.VERSION + ")");
+                db.execSQL(create + INDEX_NEW + on + Contract.NEW + ", " + Contract.VERSION + ")");
+                db.execSQL(create + INDEX_DELETED + on + Contract.DELETED + ", " + Contract.VERSION + ")");
+            }
+        }
+
+        /**
+         * Create the full-text search table, fill it from the founder table and add the
+         * triggers that keep it in step with every later insert, update and delete.
+         * The search row's docid is the founder's _id.
+         *
+         * @param db The database to modify
+         */
+        private void createSearchIndex(SQLiteDatabase db) {
+            String columns = TextUtils.join(", ", SEARCH_COLUMNS);
+            String newValues = "NEW." + TextUtils.join(", NEW.", SEARCH_COLUMNS);
+            String deleteOld = "DELETE FROM " + Contract.FOUNDER_SEARCH + " WHERE docid = OLD." + Contract._ID + "; ";
+            String insertNew = "INSERT INTO " + Contract.FOUNDER_SEARCH + " (docid, " + columns + ") VALUES (NEW." +
+                    Contract._ID + ", " + newValues + "); ";
+
+            db.execSQL("CREATE VIRTUAL TABLE " + Contract.FOUNDER_SEARCH + " USING fts4(" + columns + ")");
+            db.execSQL("INSERT INTO " + Contract.FOUNDER_SEARCH + " (docid, " + columns + ") SELECT " +
+                    Contract._ID + ", " + columns + " FROM " + Contract.FOUNDER);
+
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_SEARCH + "_insert AFTER INSERT ON " +
+                    Contract.FOUNDER + " BEGIN " + insertNew + "END");
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_SEARCH + "_update AFTER UPDATE OF " + Contract._ID +
+                    ", " + columns + " ON " + Contract.FOUNDER + " BEGIN " + deleteOld + insertNew + "END");
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_SEARCH + "_delete AFTER DELETE ON " +
+                    Contract.FOUNDER + " BEGIN " + deleteOld + "END");
+        }
+
+        /**
+         * Create the sync state table, a small set of named values that SyncService
+         * reads at start-up and updates as each batch commits.  We seed the server
+         * version from the founders we already have, which is the last time we need
+         * to scan for it.
+         *
+         * @param db The database to modify
+         */
+        private void createSyncState(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + Contract.SYNC_STATE + " (" +
+                    Contract.STATE_NAME + " TEXT PRIMARY KEY, " +
+                    Contract.STATE_VALUE + " TEXT)");
+            db.execSQL("INSERT INTO " + Contract.SYNC_STATE + " (" + Contract.STATE_NAME + ", " +
+                    Contract.STATE_VALUE + ") SELECT '" + Contract.STATE_SERVER_VERSION + "', IFNULL(MAX(" +
+                    Contract.VERSION + "), 0) FROM " + Contract.FOUNDER);
+        }
+
+        /**
+         * Create the local change log, which records every founder edited on this device
+         * so that outbound sync reads the edits rather than scanning the directory for
+         * flagged rows.  Triggers append an entry when a row is inserted as new, marked
+         * deleted, or edited while dirty, listing the columns that changed.  The entries
+         * for a founder go when SyncService drains them or when the row itself is deleted.
+         * Updates that change the version come from the server, so a row that stays dirty
+         * through one isn't logged again.  Rows already flagged are logged here once.
+         *
+         * @param db The database to modify
+         */
+        private void createChangeLog(SQLiteDatabase db) {
+            String[] fields = Contract.allFieldsIdVersion();
+
+            db.execSQL("CREATE TABLE " + Contract.FOUNDER_CHANGES + " (" +
+                    Contract.SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    Contract.FOUNDER_ID + " INTEGER NOT NULL, " +
+                    Contract.OPERATION + " TEXT NOT NULL, " +
+                    Contract.CHANGED_COLUMNS + " TEXT)");
+            db.execSQL("CREATE INDEX " + Contract.FOUNDER_CHANGES + "_founder_index ON " +
+                    Contract.FOUNDER_CHANGES + " (" + Contract.FOUNDER_ID + ")");
+
+            // Every content field, skipping _id first and version last
+            createChangeLogTriggers(db, Arrays.copyOfRange(fields, 1, fields.length - 1));
+
+            db.execSQL(CHANGE_LOG_INSERT + "SELECT " + Contract._ID + ", CASE WHEN " + Contract.SELECTION_DELETED +
+                    " THEN '" + Contract.OP_DELETED + "' WHEN " + Contract.SELECTION_NEW + " THEN '" +
+                    Contract.OP_NEW + "' ELSE '" + Contract.OP_DIRTY + "' END, NULL FROM " + Contract.FOUNDER +
+                    " WHERE " + Contract.SELECTION_DELETED + " OR " + Contract.SELECTION_NEW + " OR " +
+                    Contract.SELECTION_DIRTY + " ORDER BY " + Contract.VERSION);
+        }
+
+        /**
+         * Create the triggers on the founder table that append to the change log.
+         *
+         * @param db The database to modify
+         * @param columns The founder table's content columns, whose changes a dirty entry lists
+         */
+        private void createChangeLogTriggers(SQLiteDatabase db, String[] columns) {
+            String insert = CHANGE_LOG_INSERT;
+            String trigger = "CREATE TRIGGER " + Contract.FOUNDER_CHANGES;
+
+            db.execSQL(trigger + "_insert AFTER INSERT ON " + Contract.FOUNDER + " WHEN NEW." + Contract.NEW +
+                    " = " + Contract.FLAG_NEW + " BEGIN " + insert + "VALUES (NEW." + Contract._ID + ", '" +
+                    Contract.OP_NEW + "', NULL); END");
+            db.execSQL(trigger + "_deleted AFTER UPDATE OF " + Contract.DELETED + " ON " + Contract.FOUNDER +
+                    " WHEN NEW." + Contract.DELETED + " <> 0 AND IFNULL(OLD." + Contract.DELETED + ", 0) = 0" +
+                    " BEGIN " + insert + "VALUES (NEW." + Contract._ID + ", '" + Contract.OP_DELETED +
+                    "', NULL); END");
+            db.execSQL(trigger + "_dirty AFTER UPDATE ON " + Contract.FOUNDER + " WHEN NEW." + Contract.DIRTY +
+                    " <> 0 AND (IFNULL(OLD." + Contract.DIRTY + ", 0) = 0 OR NEW." + Contract.VERSION +
+                    " IS OLD." + Contract.VERSION + ") BEGIN " + insert + "VALUES (NEW." + Contract._ID + ", '" +
+                    Contract.OP_DIRTY + "', " + changedColumns(columns) + "); END");
+            db.execSQL(trigger + "_rekey AFTER UPDATE OF " + Contract._ID + " ON " + Contract.FOUNDER +
+                    " BEGIN UPDATE " + Contract.FOUNDER_CHANGES + " SET " + Contract.FOUNDER_ID + " = NEW." +
+                    Contract._ID + " WHERE " + Contract.FOUNDER_ID + " = OLD." + Contract._ID + "; END");
+            db.execSQL(trigger + "_purge AFTER DELETE ON " + Contract.FOUNDER + " BEGIN DELETE FROM " +
+                    Contract.FOUNDER_CHANGES + " WHERE " + Contract.FOUNDER_ID + " = OLD." + Contract._ID + "; END");
+        }
+
+        /**
+         * @param columns Columns of the table a trigger fires on
+         * @return An expression, for use in that trigger, listing those columns that the
+         *         update changed, separated by commas
+         */
+        private String changedColumns(String[] columns) {
+            List<String> changed = new ArrayList<>();
+
+            for (String column : columns) {
+                changed.add("CASE WHEN OLD." + column + " IS NOT NEW." + column + " THEN '" + column +
+                        ",' ELSE '' END");
+            }
+
+            return "rtrim(" + TextUtils.join(" || ", changed) + ", ',')";
+        }
+
+        /**
+         * Create the facet count table, fill it from the founder table, and add triggers
+         * that keep each count in step as founders are inserted, edited and deleted, so
+         * the filter screen never has to group the whole directory.  Each facet column
+         * also gets an index on (facet, preferred_full_name) so a filtered list is read
+         * straight from the index in list order.
+         *
+         * @param db The database to modify
+         */
+        private void createFacets(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + Contract.FOUNDER_FACETS + " (" +
+                    Contract.FACET + " TEXT NOT NULL, " +
+                    Contract.FACET_VALUE + " TEXT NOT NULL, " +
+                    Contract.FACET_COUNT + " INTEGER NOT NULL, " +
+                    "PRIMARY KEY (" + Contract.FACET + ", " + Contract.FACET_VALUE + "))");
+
+            for (String facet : Contract.facetFields()) {
+                db.execSQL("INSERT INTO " + Contract.FOUNDER_FACETS + FACET_COLUMNS + "SELECT '" + facet +
+                        "', IFNULL(" + facet + ", ''), COUNT(*) FROM " + Contract.FOUNDER + " GROUP BY 2");
+                db.execSQL("CREATE INDEX " + Contract.FOUNDER + "_" + facet + "_index ON " + Contract.FOUNDER +
+                        " (" + facet + ", " + Contract.PREFERRED_FULL_NAME + ")");
+            }
+
+            createFacetTriggers(db);
+        }
+
+        /**
+         * Create the triggers on the founder table that keep the facet counts in step.
+         *
+         * @param db The database to modify
+         */
+        private void createFacetTriggers(SQLiteDatabase db) {
+            String columns = FACET_COLUMNS;
+            StringBuilder increment = new StringBuilder();
+            StringBuilder decrement = new StringBuilder();
+
+            for (String facet : Contract.facetFields()) {
+                String newValue = "IFNULL(NEW." + facet + ", '')";
+                String oldValue = "IFNULL(OLD." + facet + ", '')";
+                String match = " WHERE " + Contract.FACET + " = '" + facet + "' AND " + Contract.FACET_VALUE + " = ";
+                String add = "INSERT OR IGNORE INTO " + Contract.FOUNDER_FACETS + columns + "VALUES ('" + facet +
+                        "', " + newValue + ", 0); UPDATE " + Contract.FOUNDER_FACETS + " SET " +
+                        Contract.FACET_COUNT + " = " + Contract.FACET_COUNT + " + 1" + match + newValue + "; ";
+                String remove = "UPDATE " + Contract.FOUNDER_FACETS + " SET " + Contract.FACET_COUNT + " = " +
+                        Contract.FACET_COUNT + " - 1" + match + oldValue + "; DELETE FROM " +
+                        Contract.FOUNDER_FACETS + match + oldValue + " AND " + Contract.FACET_COUNT + " <= 0; ";
+
+                db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_FACETS + "_update_" + facet + " AFTER UPDATE OF " +
+                        facet + " ON " + Contract.FOUNDER + " WHEN " + oldValue + " IS NOT " + newValue +
+                        " BEGIN " + remove + add + "END");
+
+                increment.append(add);
+                decrement.append(remove);
+            }
+
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_FACETS + "_insert AFTER INSERT ON " +
+                    Contract.FOUNDER + " BEGIN " + increment + "END");
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_FACETS + "_delete AFTER DELETE ON " +
+                    Contract.FOUNDER + " BEGIN " + decrement + "END");
+        }
+
+        /**
+         * Add the sort key and section columns, fill them for every founder, and move
+         * the list's indexes from the raw name onto the sort key.  The keys are folded
+         * in Java, so we can't fill them with a single UPDATE.
+         *
+         * @param db The database to modify
+         */
+        private void createSortKeys(SQLiteDatabase db) {
+            String alter = "ALTER TABLE " + Contract.FOUNDER + " ADD COLUMN ";
+
+            db.execSQL(alter + Contract.SORT_KEY + " TEXT");
+            db.execSQL(alter + Contract.SECTION + " TEXT");
+
+            Cursor founders = db.rawQuery("SELECT " + Contract._ID + ", " + Contract.PREFERRED_FULL_NAME +
+                    " FROM " + Contract.FOUNDER, null);
+            SQLiteStatement update = db.compileStatement("UPDATE " + Contract.FOUNDER + " SET " +
+                    Contract.SORT_KEY + " = ?, " + Contract.SECTION + " = ? WHERE " + SELECTION_ID);
+
+            try {
+                while (founders.moveToNext()) {
+                    String sortKey = SortKey.of(founders.getString(1));
+
+                    update.bindString(1, sortKey);
+                    update.bindString(2, SortKey.sectionOf(sortKey));
+                    update.bindLong(3, founders.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            } finally {
+                founders.close();
+                update.close();
+            }
+
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_NAME);
+
+            for (String facet : Contract.facetFields()) {
+                db.execSQL("DROP INDEX IF EXISTS " + Contract.FOUNDER + "_" + facet + "_index");
+            }
+
+            createListIndexes(db);
+        }
+
+        /**
+         * Create the indexes the list reads in order: one on the sort key, and one on
+         * (facet, sort_key) for each facet column.
+         *
+         * @param db The database to modify
+         */
+        private void createListIndexes(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX " + INDEX_SORT_KEY + " ON " + Contract.FOUNDER + " (" + Contract.SORT_KEY + ")");
+
+            for (String facet : Contract.facetFields()) {
+                db.execSQL("CREATE INDEX " + Contract.FOUNDER + "_" + facet + "_index ON " + Contract.FOUNDER +
+                        " (" + facet + ", " + Contract.SORT_KEY + ")");
+            }
+        }
+
+        /**
+         * Move the columns that only the detail screen and sync read into founder_cold,
+         * one row per founder with the same _id, so the founder rows the list and its
+         * filters scan are a fraction of their old size and many more fit in a page.
+         * SQLite can't drop columns, so we rebuild the founder table with the hot columns
+         * alone, then recreate its indexes and triggers.  The founder_record view joins
+         * the halves back together under the same column names as before.
+         *
+         * @param db The database to modify
+         */
+        private void splitColdColumns(SQLiteDatabase db) {
+            String[] cold = Contract.coldFields();
+            List<String> hot = new ArrayList<>(Arrays.asList(Contract.allFieldsIdVersion()));
+            String founderNew = Contract.FOUNDER + "_new";
+            StringBuilder coldTable = new StringBuilder();
+            StringBuilder hotTable = new StringBuilder();
+            StringBuilder view = new StringBuilder();
+
+            hot.removeAll(Arrays.asList(cold));
+            hot.addAll(Arrays.asList(Contract.DELETED, Contract.DIRTY, Contract.NEW, Contract.SORT_KEY,
+                    Contract.SECTION));
+
+            coldTable.append("CREATE TABLE ").append(Contract.FOUNDER_COLD).append(" (")
+                    .append(Contract._ID).append(" INTEGER PRIMARY KEY");
+            view.append("CREATE VIEW ").append(Contract.FOUNDER_RECORD).append(" AS SELECT ")
+                    .append(Contract.FOUNDER).append(".*");
+
+            for (String field : cold) {
+                coldTable.append(", ").append(field).append(" TEXT");
+                view.append(", ").append(Contract.FOUNDER_COLD).append(".").append(field).append(" AS ")
+                        .append(field);
+            }
 
-        return true;
-    }
+            coldTable.append(")");
+            view.append(" FROM ").append(Contract.FOUNDER).append(" LEFT JOIN ").append(Contract.FOUNDER_COLD)
+                    .append(" ON ").append(Contract.FOUNDER_COLD).append(".").append(Contract._ID).append(" = ")
+                    .append(Contract.FOUNDER).append(".").append(Contract._ID);
 
-    @Override
-    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs, String sort) {
-        // A best practice is to use a query builder to construct an actual query from the URI.
-        SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
-        String orderBy = null;
+            hotTable.append("CREATE TABLE ").append(founderNew).append(" (")
+                    .append(Contract._ID).append(" INTEGER PRIMARY KEY AUTOINCREMENT");
 
-        qb.setTables(tableForUri(uri));
+            for (String field : hot.subList(1, hot.size())) {
+                boolean integer = field.equals(Contract.VERSION) || field.equals(Contract.DELETED) ||
+                        field.equals(Contract.DIRTY) || field.equals(Contract.NEW);
 
-        if (!TextUtils.isEmpty(sort)) {
-            orderBy = sort;
-        }
+                hotTable.append(", ").append(field).append(integer ? " INTEGER" : " TEXT");
+            }
 
-        if (sUriMatcher.match(uri) == URI_MATCHER_FOUNDER_ID) {
-            qb.appendWhere(Contract._ID + "=" + uri.getLastPathSegment());
-        }
+            hotTable.append(")");
 
-        // Note that we're not really performing the query per se, but rather building a Cursor that will
-        // iterate over all the query results.  We can use a read-only database here.
-        Cursor cursor = qb.query(mDatabase.getReadableDatabase(), projection, selection, selectionArgs, null, null, orderBy);
+            String coldColumns = Contract._ID + ", " + TextUtils.join(", ", cold);
+            String hotColumns = TextUtils.join(", ", hot);
 
-        // The cursor needs to know about the resolver so it can be informed of any changes while
-        // the cursor is active because changes could impact cursor results.
-        Context context = getContext();
+            db.execSQL(coldTable.toString());
+            db.execSQL("INSERT INTO " + Contract.FOUNDER_COLD + " (" + coldColumns + ") SELECT " + coldColumns +
+                    " FROM " + Contract.FOUNDER);
 
-        if (context != null) {
-            cursor.setNotificationUri(context.getContentResolver(), uri);
-        }
+            // Dropping the old table drops its indexes and triggers too.
+            db.execSQL(hotTable.toString());
+            db.execSQL("INSERT INTO " + founderNew + " (" + hotColumns + ") SELECT " + hotColumns + " FROM " +
+                    Contract.FOUNDER);
+            db.execSQL("DROP TABLE " + Contract.FOUNDER);
+            db.execSQL("ALTER TABLE " + founderNew + " RENAME TO " + Contract.FOUNDER);
+            db.execSQL(view.toString());
 
-        return cursor;
-    }
+            createSyncIndexes(db);
+            createListIndexes(db);
+            createColdTriggers(db);
+            createFacetTriggers(db);
 
-    /**
-     * Determine which table we should use for a given URI.
-     *
-     * @param uri A URI corresponding to this provider
-     * @return The table name needed for a CRUD operation based on this URI
-     */
-    private String tableForUri(Uri uri) {
-        switch (sUriMatcher.match(uri)) {
-            case URI_MATCHER_FOUNDERS:
-            case URI_MATCHER_FOUNDER_ID:
-            default:
-                return Contract.FOUNDER;
+            // Content columns only: skip _id, and the version and local columns after it.
+            createChangeLogTriggers(db, hot.subList(1, hot.indexOf(Contract.VERSION))
+                    .toArray(new String[0]));
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_CHANGES + "_cold AFTER UPDATE ON " +
+                    Contract.FOUNDER_COLD + " WHEN (SELECT " + Contract.DIRTY + " FROM " + Contract.FOUNDER +
+                    " WHERE " + Contract._ID + " = NEW." + Contract._ID + ") <> 0 AND " + changedColumns(cold) +
+                    " <> '' BEGIN " + CHANGE_LOG_INSERT + "VALUES (NEW." + Contract._ID + ", '" +
+                    Contract.OP_DIRTY + "', " + changedColumns(cold) + "); END");
         }
-    }
-
-    @Override
-    public int update(@NonNull Uri uri, ContentValues values, String where, String[] whereArgs) {
-        return modify(uri, values, where, whereArgs);
-    }
 
-    /**
-     * Database helper to create a CET Founders SQLite3 database.
-     */
-    public class FounderDatabaseHelper extends SQLiteOpenHelper {
         /**
-         * Database filename.
+         * Create the triggers that keep founder_cold and the search index in step with
+         * the founder table once the columns are split.  A cold row follows its founder
+         * when the founder is renumbered or deleted.  The search row is rebuilt from the
+         * founder_record view whenever a searched column in either table changes, and a
+         * new founder's search row is written once its cold row exists.
+         *
+         * @param db The database to modify
          */
-        private static final String DATABASE_NAME = "founders.db";
+        private void createColdTriggers(SQLiteDatabase db) {
+            List<String> cold = Arrays.asList(Contract.coldFields());
+            List<String> hotSearch = new ArrayList<>();
+            List<String> coldSearch = new ArrayList<>();
+            String columns = TextUtils.join(", ", SEARCH_COLUMNS);
+            String coldId = " WHERE " + Contract._ID + " = OLD." + Contract._ID + "; ";
+            String deleteOld = "DELETE FROM " + Contract.FOUNDER_SEARCH + " WHERE docid = OLD." + Contract._ID + "; ";
+            String refreshNew = "DELETE FROM " + Contract.FOUNDER_SEARCH + " WHERE docid = NEW." + Contract._ID +
+                    "; INSERT INTO " + Contract.FOUNDER_SEARCH + " (docid, " + columns + ") SELECT " +
+                    Contract._ID + ", " + columns + " FROM " + Contract.FOUNDER_RECORD + " WHERE " + Contract._ID +
+                    " = NEW." + Contract._ID + "; ";
+            String trigger = "CREATE TRIGGER " + Contract.FOUNDER_SEARCH;
+
+            for (String column : SEARCH_COLUMNS) {
+                (cold.contains(column) ? coldSearch : hotSearch).add(column);
+            }
+
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_COLD + "_rekey AFTER UPDATE OF " + Contract._ID +
+                    " ON " + Contract.FOUNDER + " WHEN OLD." + Contract._ID + " IS NOT NEW." + Contract._ID +
+                    " BEGIN UPDATE " + Contract.FOUNDER_COLD + " SET " + Contract._ID + " = NEW." + Contract._ID +
+                    coldId + deleteOld + refreshNew + "END");
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_COLD + "_delete AFTER DELETE ON " +
+                    Contract.FOUNDER + " BEGIN DELETE FROM " + Contract.FOUNDER_COLD + coldId + deleteOld + "END");
+
+            db.execSQL(trigger + "_insert AFTER INSERT ON " + Contract.FOUNDER_COLD + " BEGIN " + refreshNew +
+                    "END");
+            db.execSQL(trigger + "_update AFTER UPDATE OF " + TextUtils.join(", ", hotSearch) + " ON " +
+                    Contract.FOUNDER + " WHEN " + anyChanged(hotSearch) + " BEGIN " + refreshNew + "END");
+            db.execSQL(trigger + "_cold_update AFTER UPDATE OF " + TextUtils.join(", ", coldSearch) + " ON " +
+                    Contract.FOUNDER_COLD + " WHEN " + anyChanged(coldSearch) + " BEGIN " + refreshNew + "END");
+        }
 
         /**
-         * Database version.
+         * Create the table of photo validators: for each founder and spouse photo we
+         * hold, the ETag and Last-Modified the server sent with it and a hash of its
+         * bytes, so sync can ask for the photo only if it has changed.  The validators
+         * follow their founder when it is renumbered or deleted.
+         *
+         * @param db The database to modify
          */
-        private static final int DATABASE_VERSION = 5;
+        private void createPhotoValidators(SQLiteDatabase db) {
+            String trigger = "CREATE TRIGGER " + Contract.PHOTO_VALIDATOR;
+
+            db.execSQL("CREATE TABLE " + Contract.PHOTO_VALIDATOR + " (" +
+                    Contract.FOUNDER_ID + " INTEGER NOT NULL, " +
+                    Contract.PHOTO_VARIANT + " TEXT NOT NULL, " +
+                    Contract.ETAG + " TEXT, " +
+                    Contract.LAST_MODIFIED + " TEXT, " +
+                    Contract.CONTENT_HASH + " TEXT, " +
+                    "PRIMARY KEY (" + Contract.FOUNDER_ID + ", " + Contract.PHOTO_VARIANT + "))");
+
+            db.execSQL(trigger + "_rekey AFTER UPDATE OF " + Contract._ID + " ON " + Contract.FOUNDER +
+                    " BEGIN UPDATE " + Contract.PHOTO_VALIDATOR + " SET " + Contract.FOUNDER_ID + " = NEW." +
+                    Contract._ID + " WHERE " + Contract.FOUNDER_ID + " = OLD." + Contract._ID + "; END");
+            db.execSQL(trigger + "_delete AFTER DELETE ON " + Contract.FOUNDER + " BEGIN DELETE FROM " +
+                    Contract.PHOTO_VALIDATOR + " WHERE " + Contract.FOUNDER_ID + " = OLD." + Contract._ID + "; END");
+        }
 
         /**
-         * Normal constructor.
+         * Give founder_cold a copy of each founder's version, and log cold edits only when
+         * that copy is unchanged, as the founder table's dirty trigger does.  Without it,
+         * a server write to a founder still dirty with a local edit logged the server's
+         * cold values as ours, and sync pushed them back up.  Every server write carries
+         * the version it brings; a local edit leaves it alone.
          *
-         * @param context The context in which this content provider operates
+         * @param db The database to modify
          */
-        public FounderDatabaseHelper(Context context) {
-            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        private void addColdVersion(SQLiteDatabase db) {
+            String[] cold = Contract.coldFields();
+
+            db.execSQL("DROP TRIGGER " + Contract.FOUNDER_CHANGES + "_cold");
+            db.execSQL("ALTER TABLE " + Contract.FOUNDER_COLD + " ADD COLUMN " + Contract.VERSION + " INTEGER");
+            db.execSQL("UPDATE " + Contract.FOUNDER_COLD + " SET " + Contract.VERSION + " = (SELECT " +
+                    Contract.VERSION + " FROM " + Contract.FOUNDER + " WHERE " + Contract.FOUNDER + "." +
+                    Contract._ID + " = " + Contract.FOUNDER_COLD + "." + Contract._ID + ")");
+            db.execSQL("CREATE TRIGGER " + Contract.FOUNDER_CHANGES + "_cold AFTER UPDATE ON " +
+                    Contract.FOUNDER_COLD + " WHEN NEW." + Contract.VERSION + " IS OLD." + Contract.VERSION +
+                    " AND (SELECT " + Contract.DIRTY + " FROM " + Contract.FOUNDER + " WHERE " + Contract._ID +
+                    " = NEW." + Contract._ID + ") <> 0 AND " + changedColumns(cold) + " <> '' BEGIN " +
+                    CHANGE_LOG_INSERT + "VALUES (NEW." + Contract._ID + ", '" + Contract.OP_DIRTY + "', " +
+                    changedColumns(cold) + "); END");
         }
 
-        private void initDatabase(SQLiteDatabase db) {
-            String create = "CREATE TABLE ";
-            String idField = BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, ";
+        /**
+         * @param columns Columns of the table a trigger fires on
+         * @return A condition, for use in that trigger, that the update changed any of them
+         */
+        private String anyChanged(List<String> columns) {
+            List<String> changed = new ArrayList<>();
 
-            // Create the match table
-            db.execSQL(create + Contract.FOUNDER + " (" + idField + //
-                    Contract.GIVEN_NAMES + " TEXT, " + //
-                    Contract.SURNAMES + " TEXT, " + //
-                    Contract.PREFERRED_FIRST_NAME + " TEXT, " + //
-                    Contract.PREFERRED_FULL_NAME + " TEXT, " + //
-                    Contract.CELL + " TEXT, " + //
-                    Contract.EMAIL + " TEXT, " + //
-                    Contract.WEB_SITE + " TEXT, " + //
-                    Contract.LINKED_IN + " TEXT, " + //
-                    Contract.BIOGRAPHY + " TEXT, " + //
-                    Contract.EXPERTISE + " TEXT, " + //
-                    Contract.SPOUSE_GIVEN_NAMES + " TEXT, " + //
-                    Contract.SPOUSE_SURNAMES + " TEXT, " + //
-                    Contract.SPOUSE_PREFERRED_FIRST_NAME + " TEXT, " + //
-                    Contract.SPOUSE_PREFERRED_FULL_NAME + " TEXT, " + //
-                    Contract.SPOUSE_CELL + " TEXT, " + //
-                    Contract.SPOUSE_EMAIL + " TEXT, " + //
-                    Contract.STATUS + " TEXT, " + //
-                    Contract.YEAR_JOINED + " TEXT, " + //
-                    Contract.HOME_ADDRESS1 + " TEXT, " + //
-                    Contract.HOME_ADDRESS2 + " TEXT, " + //
-                    Contract.HOME_CITY + " TEXT, " + //
-                    Contract.HOME_STATE + " TEXT, " + //
-                    Contract.HOME_POSTAL_CODE + " TEXT, " + //
-                    Contract.HOME_COUNTRY + " TEXT, " + //
-                    Contract.ORGANIZATION_NAME + " TEXT, " + //
-                    Contract.JOB_TITLE + " TEXT, " + //
-                    Contract.WORK_ADDRESS1 + " TEXT, " + //
-                    Contract.WORK_ADDRESS2 + " TEXT, " + //
-                    Contract.WORK_CITY + " TEXT, " + //
-                    Contract.WORK_STATE + " TEXT, " + //
-                    Contract.WORK_POSTAL_CODE + " TEXT, " + //
-                    Contract.WORK_COUNTRY + " TEXT, " + //
-                    Contract.MAILING_ADDRESS1 + " TEXT, " + //
-                    Contract.MAILING_ADDRESS2 + " TEXT, " + //
-                    Contract.MAILING_CITY + " TEXT, " + //
-                    Contract.MAILING_STATE + " TEXT, " + //
-                    Contract.MAILING_POSTAL_CODE + " TEXT, " + //
-                    Contract.MAILING_COUNTRY + " TEXT, " + //
-                    Contract.MAILING_SAME_AS + " TEXT, " + //
-                    Contract.IMAGE_URL + " TEXT, " + //
-                    Contract.SPOUSE_IMAGE_URL + " TEXT, " + //
-                    Contract.VERSION + " INTEGER, " + //
-                    Contract.DELETED + " INTEGER, " + //
-                    Contract.DIRTY + " INTEGER, " + //
-                    Contract.NEW + " INTEGER " + //
-                    ");");
+            for (String column : columns) {
+                changed.add("OLD." + column + " IS NOT NEW." + column);
+            }
+
+            return "(" + TextUtils.join(" OR ", changed) + ")";
         }
 
         @Override
         public void onCreate(SQLiteDatabase db) {
+            // A new database runs the same steps as an upgraded one, so both end up identical.
             initDatabase(db);
+            Migration.migrate(db, BASE_VERSION, DATABASE_VERSION, mMigrations);
         }
 
         @Override
-        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            if (oldVersion < DATABASE_VERSION) {
-                // NEEDSWORK: this is a very naive upgrade technique
+        public void onOpen(SQLiteDatabase db) {
+            super.onOpen(db);
+
+            if (!db.isReadOnly()) {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                    db.enableWriteAheadLogging();
+                }
+
+                pragma(db, "wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES);
+            }
+        }
 
-                db.execSQL("DROP TABLE " + Contract.FOUNDER);
-                initDatabase(db);
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < BASE_VERSION) {
+                // We have no history for these versions, so start over and let sync refill it.
+                db.execSQL("DROP TABLE IF EXISTS " + Contract.PHOTO_VALIDATOR);
+                db.execSQL("DROP VIEW IF EXISTS " + Contract.FOUNDER_RECORD);
+                db.execSQL("DROP TABLE IF EXISTS " + Contract.FOUNDER_COLD);
+                db.execSQL("DROP TABLE IF EXISTS " + Contract.FOUNDER_FACETS);
+                db.execSQL("DROP TABLE IF EXISTS " + Contract.FOUNDER_CHANGES);
+                db.execSQL("DROP TABLE IF EXISTS " + Contract.SYNC_STATE);
+                db.execSQL("DROP TABLE IF EXISTS " + Contract.FOUNDER);
+                onCreate(db);
+            } else {
+                Migration.migrate(db, oldVersion, newVersion, mMigrations);
             }
         }
     }
@@ -264,6 +2292,31 @@ public class FounderProvider extends ContentProvider {
     public static final class Contract implements BaseColumns {
         // Table names
         public static final String FOUNDER = "founder";
+        public static final String FOUNDER_SEARCH = "founder_search";
+        public static final String SYNC_STATE = "sync_state";
+        public static final String FOUNDER_CHANGES = "founder_changes";
+        public static final String FOUNDER_FACETS = "founder_facets";
+        public static final String FOUNDER_COLD = "founder_cold";
+        public static final String PHOTO_VALIDATOR = "photo_validator";
+
+        // View joining FOUNDER and FOUNDER_COLD back into whole Founder records
+        public static final String FOUNDER_RECORD = "founder_record";
+
+        // Path for the facet counts URI
+        public static final String FACETS = "facets";
+
+        // Path for full-text search URIs
+        public static final String SEARCH = "search";
+
+        // Path for the founder list summary URI
+        public static final String SUMMARY = "summary";
+
+        // Path and query parameters for the keyset-paginated founder URI
+        public static final String PAGE = "page";
+        public static final String PARAM_SORT = "sort";
+        public static final String PARAM_AFTER = "after";
+        public static final String PARAM_AFTER_ID = "after_id";
+        public static final String PARAM_LIMIT = "limit";
 
         // Founder fields
         // Also BaseColumns._ID here
@@ -313,6 +2366,59 @@ public class FounderProvider extends ContentProvider {
         public static final String DIRTY = "dirty";
         public static final String NEW = "new";
 
+        // Derived founder fields, filled by the provider from PREFERRED_FULL_NAME
+        public static final String SORT_KEY = "sort_key";
+        public static final String SECTION = "section";
+
+        // Sync state fields
+        public static final String STATE_NAME = "name";
+        public static final String STATE_VALUE = "value";
+
+        // Sync state entry names
+        public static final String STATE_SERVER_VERSION = "server_version";
+        public static final String STATE_TARGET_VERSION = "target_version";
+        public static final String STATE_LAST_SYNC_TIME = "last_sync_time";
+        public static final String STATE_PHASE = "phase";
+        public static final String STATE_LAST_MAINTENANCE_TIME = "last_maintenance_time";
+        public static final String STATE_CONTINUATION = "continuation";
+        public static final String STATE_CLIENT_ID = "client_id";
+
+        // Sync phases, as recorded under STATE_PHASE
+        public static final String PHASE_OUTBOUND = "outbound";
+        public static final String PHASE_DOWNLOAD = "download";
+        public static final String PHASE_COMPLETE = "complete";
+
+        // Facet count fields
+        public static final String FACET = "facet";
+        public static final String FACET_VALUE = "value";
+        public static final String FACET_COUNT = "count";
+
+        // Photo validator fields
+        // Also FOUNDER_ID here
+        public static final String PHOTO_VARIANT = "variant";
+        public static final String ETAG = "etag";
+        public static final String LAST_MODIFIED = "last_modified";
+        public static final String CONTENT_HASH = "content_hash";
+
+        // Photo variants
+        public static final String VARIANT_FOUNDER = "founder";
+        public static final String VARIANT_SPOUSE = "spouse";
+
+        // Change log fields
+        public static final String SEQ = "seq";
+        public static final String FOUNDER_ID = "founder_id";
+        public static final String OPERATION = "operation";
+        public static final String CHANGED_COLUMNS = "changed_columns";
+
+        // Change log operations
+        public static final String OP_NEW = "new";
+        public static final String OP_DIRTY = "dirty";
+        public static final String OP_DELETED = "deleted";
+
+        // Search result fields
+        // Also BaseColumns._ID and PREFERRED_FULL_NAME here
+        public static final String SNIPPET = "snippet";
+
         /**
          * The authority name for this ContentProvider.
          */
@@ -323,6 +2429,153 @@ public class FounderProvider extends ContentProvider {
          */
         public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + FOUNDER);
 
+        /**
+         * Base URI for full-text search of CET Founders content.
+         */
+        public static final Uri SEARCH_URI = Uri.parse("content://" + AUTHORITY + "/" + SEARCH);
+
+        /**
+         * URI for the lightweight founder rows shown in the list.  Unless the caller
+         * asks for other columns, it returns only the summaryFields().
+         */
+        public static final Uri SUMMARY_URI = Uri.parse("content://" + AUTHORITY + "/" + FOUNDER + "/" + SUMMARY);
+
+        /**
+         * URI for SyncService's persistent state: name and value rows, one per entry.
+         * Inserting an entry replaces its previous value.
+         */
+        public static final Uri SYNC_STATE_URI = Uri.parse("content://" + AUTHORITY + "/" + SYNC_STATE);
+
+        /**
+         * URI for the local change log: seq, founder_id, operation and changed_columns
+         * rows, one per local edit, to be read in seq order.  Delete entries once the
+         * server has them.
+         */
+        public static final Uri CHANGES_URI = Uri.parse("content://" + AUTHORITY + "/" + FOUNDER_CHANGES);
+
+        /**
+         * URI for the number of founders having each value of each of the facetFields():
+         * facet, value and count rows.  Add filters with withFilter() to count only the
+         * founders that match them.
+         */
+        public static final Uri FACETS_URI = Uri.parse("content://" + AUTHORITY + "/" + FACETS);
+
+        /**
+         * URI for the validators of the photos we hold: founder_id, variant, etag,
+         * last_modified and content_hash rows, one per photo.  Inserting a photo's
+         * validators replaces its old ones.
+         */
+        public static final Uri PHOTO_VALIDATORS_URI = Uri.parse("content://" + AUTHORITY + "/" + PHOTO_VALIDATOR);
+
+        /**
+         * Provider call() method that checkpoints the write-ahead log.
+         */
+        public static final String METHOD_CHECKPOINT = "checkpoint";
+
+        /**
+         * Provider call() method that holds the change notifications for the calling
+         * thread's writes until a matching METHOD_RESUME_NOTIFICATIONS from the same
+         * thread.  Calls nest; bracket a burst of writes with them.
+         */
+        public static final String METHOD_SUSPEND_NOTIFICATIONS = "suspendNotifications";
+
+        /**
+         * Provider call() method that undoes one METHOD_SUSPEND_NOTIFICATIONS.
+         */
+        public static final String METHOD_RESUME_NOTIFICATIONS = "resumeNotifications";
+
+        /**
+         * Provider call() method that sets, in milliseconds given as the arg, how long
+         * change notifications are held so they can be coalesced.
+         */
+        public static final String METHOD_SET_NOTIFICATION_WINDOW = "setNotificationWindow";
+
+        /**
+         * Provider call() method that inserts or updates, by _id, every full Founder record
+         * in the EXTRA_VALUES list, in one transaction.  The same transaction deletes every
+         * _id in the optional EXTRA_DELETE_IDS and sets the optional EXTRA_STATE sync state
+         * entries.  The result's EXTRA_COUNT holds the number of records written or deleted.
+         */
+        public static final String METHOD_UPSERT = "upsert";
+
+        /**
+         * Provider call() method that sets the sync state entries in EXTRA_STATE.
+         */
+        public static final String METHOD_SET_SYNC_STATE = "setSyncState";
+
+        /**
+         * Provider call() method that runs one pass of database maintenance, stopping
+         * once the budget in milliseconds given as the arg is spent.  The result's
+         * EXTRA_COUNT holds the number of leftover rows removed, and EXTRA_SIZE_BEFORE,
+         * EXTRA_SIZE_AFTER, EXTRA_FREE_BEFORE and EXTRA_FREE_AFTER the size of the
+         * database and of its free pages, in bytes, before and after the pass.  The one-time
+         * full VACUUM that turns on incremental vacuum can't be bounded by the budget, so
+         * it only runs when the extras' EXTRA_ALLOW_REBUILD is true.
+         */
+        public static final String METHOD_MAINTAIN = "maintain";
+
+        /**
+         * Provider call() method that imports the gzip-compressed directory snapshot in
+         * the file whose path is given as the arg.  It does nothing while local edits are
+         * waiting to sync, or if the snapshot is no newer than our data.  The result's
+         * EXTRA_COUNT holds the number of founders imported.
+         */
+        public static final String METHOD_IMPORT_SNAPSHOT = "importSnapshot";
+
+        /**
+         * Provider call() method that reports how often our compiled write statements
+         * were reused (EXTRA_HITS) or had to be compiled (EXTRA_MISSES).
+         */
+        public static final String METHOD_STATEMENT_STATS = "statementStats";
+
+        /**
+         * Provider call() method that reports how often lookups of one founder by _id
+         * were answered from the row cache (EXTRA_HITS) or had to read the database
+         * (EXTRA_MISSES).
+         */
+        public static final String METHOD_ROW_CACHE_STATS = "rowCacheStats";
+
+        /**
+         * Extras key for a cache hit count returned from call().
+         */
+        public static final String EXTRA_HITS = "hits";
+
+        /**
+         * Extras key for a cache miss count returned from call().
+         */
+        public static final String EXTRA_MISSES = "misses";
+
+        /**
+         * Extras key for an ArrayList of ContentValues passed to call().
+         */
+        public static final String EXTRA_VALUES = "values";
+
+        /**
+         * Extras key for an array of founder IDs to delete, passed to call().
+         */
+        public static final String EXTRA_DELETE_IDS = "deleteIds";
+
+        /**
+         * Extras key for ContentValues of sync state entries, keyed by name, passed to call().
+         */
+        public static final String EXTRA_STATE = "state";
+
+        /**
+         * Extras key for a row count returned from call().
+         */
+        public static final String EXTRA_COUNT = "count";
+
+        // Extras keys for the database sizes, in bytes, returned from METHOD_MAINTAIN
+        public static final String EXTRA_SIZE_BEFORE = "sizeBefore";
+        public static final String EXTRA_SIZE_AFTER = "sizeAfter";
+        public static final String EXTRA_FREE_BEFORE = "freeBefore";
+        public static final String EXTRA_FREE_AFTER = "freeAfter";
+
+        /**
+         * Extras key for whether METHOD_MAINTAIN may rebuild the whole database.
+         */
+        public static final String EXTRA_ALLOW_REBUILD = "allowRebuild";
+
         /**
          * Flag indicating this Founder record is not deleted.
          */
@@ -353,11 +2606,116 @@ public class FounderProvider extends ContentProvider {
          */
         public static final String FLAG_NEW = "1";
 
+        /**
+         * Selection for Founder records that are marked as deleted.  Use this exact text
+         * so SQLite can match it against the partial index on deleted records.
+         */
+        public static final String SELECTION_DELETED = DELETED + " <> 0";
+
+        /**
+         * Selection for Founder records that are dirty (see SELECTION_DELETED).
+         */
+        public static final String SELECTION_DIRTY = DIRTY + " <> 0";
+
+        /**
+         * Selection for Founder records that are new (see SELECTION_DELETED).
+         */
+        public static final String SELECTION_NEW = NEW + " = " + FLAG_NEW;
+
         /**
          * Field name of the ID field on the server (needed for translation).
          */
         public static final String SERVER_ID = "id";
 
+        /**
+         * Build the URI that searches names, organization, job title, expertise and
+         * biography for the given text.
+         *
+         * @param query The text the user typed
+         * @return A URI whose query returns ranked _id, preferred_full_name and snippet rows
+         */
+        public static Uri searchUri(String query) {
+            return Uri.withAppendedPath(SEARCH_URI, Uri.encode(query));
+        }
+
+        /**
+         * Build the URI for one page of Founder summaries, ordered by sort_key and then
+         * _id.  Pass the sort key and _id of the last row of the previous page, or a null
+         * afterId for the first page.
+         *
+         * @param after The previous page's last sort_key (may be null)
+         * @param afterId The previous page's last _id, or null for the first page
+         * @param limit Most rows to return
+         * @return A URI whose query returns the page
+         */
+        public static Uri pageUri(String after, Long afterId, int limit) {
+            Uri.Builder builder = CONTENT_URI.buildUpon()
+                    .appendPath(PAGE)
+                    .appendQueryParameter(PARAM_SORT, SORT_KEY)
+                    .appendQueryParameter(PARAM_LIMIT, Integer.toString(limit));
+
+            if (afterId != null) {
+                builder.appendQueryParameter(PARAM_AFTER_ID, afterId.toString());
+
+                if (after != null) {
+                    builder.appendQueryParameter(PARAM_AFTER, after);
+                }
+            }
+
+            return builder.build();
+        }
+
+        /**
+         * Restrict a SUMMARY_URI, page or FACETS_URI query to founders with the given
+         * value of a facet.  Filters on different facets combine.
+         *
+         * @param uri The URI to restrict
+         * @param facet One of the facetFields()
+         * @param value The value to match; empty matches founders with no value
+         * @return The restricted URI
+         */
+        public static Uri withFilter(Uri uri, String facet, String value) {
+            return uri.buildUpon().appendQueryParameter(facet, value).build();
+        }
+
+        /**
+         * Gives an array of the fields the directory can be filtered on.
+         *
+         * @return List of facet fields
+         */
+        public static String[] facetFields() {
+            return new String[] {
+                    STATUS, YEAR_JOINED, ORGANIZATION_NAME, HOME_CITY, HOME_STATE, WORK_CITY, WORK_STATE
+            };
+        }
+
+        /**
+         * Gives an array of the fields needed to show a Founder in the list.
+         *
+         * @return List of fields in a Founder summary.
+         */
+        public static String[] summaryFields() {
+            return new String[] { _ID, PREFERRED_FULL_NAME, IMAGE_URL, SORT_KEY, SECTION };
+        }
+
+        /**
+         * Gives an array of the Founder fields that only the detail screen and sync read.
+         * They live in FOUNDER_COLD rather than FOUNDER, so scans of the list columns
+         * don't have to page them in.
+         *
+         * @return List of cold fields
+         */
+        public static String[] coldFields() {
+            return new String[] {
+                    WEB_SITE, LINKED_IN, BIOGRAPHY, EXPERTISE, SPOUSE_GIVEN_NAMES, SPOUSE_SURNAMES,
+                    SPOUSE_PREFERRED_FIRST_NAME, SPOUSE_PREFERRED_FULL_NAME, SPOUSE_CELL, SPOUSE_EMAIL,
+                    HOME_ADDRESS1, HOME_ADDRESS2, HOME_POSTAL_CODE, HOME_COUNTRY, WORK_ADDRESS1,
+                    WORK_ADDRESS2, WORK_POSTAL_CODE, WORK_COUNTRY, MAILING_ADDRESS1, MAILING_ADDRESS2,
+                    MAILING_CITY, MAILING_STATE, MAILING_POSTAL_CODE, MAILING_COUNTRY, MAILING_SAME_AS,
+                    SPOUSE_IMAGE_URL
+            };
+        }
+
         /**
          * Gives an array of fields in the Founder record, including ID and version fields,
          * together with all content fields.
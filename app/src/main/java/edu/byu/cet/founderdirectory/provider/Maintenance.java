@@ -0,0 +1,256 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+
+/**
+ * One pass of housekeeping on founders.db, meant for when the app is idle.  It removes
+ * founders left marked deleted with nothing waiting to sync, and rows in the side
+ * tables whose founder has gone, refreshes the query planner's statistics, and hands
+ * free pages back to the file system.  Each step works in small transactions and
+ * checks the time budget between them, so a pass never holds the write lock for long
+ * and stops once its time is up; the next pass carries on where it left off.
+ */
+public class Maintenance {
+    private static final String TAG = Maintenance.class.getSimpleName();
+
+    /**
+     * Rows we delete per transaction.
+     */
+    private static final int DELETE_BATCH_SIZE = 200;
+
+    /**
+     * Free pages we release per incremental vacuum step.
+     */
+    private static final int VACUUM_BATCH_PAGES = 64;
+
+    /**
+     * PRAGMA auto_vacuum value for incremental vacuum.
+     */
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * Leftover rows to remove: the table, its key column, and a selection of the rows
+     * that should no longer be there.  Founders come first, so that the side table rows
+     * their delete triggers miss are swept up in the same pass.
+     */
+    private static final String[][] LEFTOVERS = {
+            { Contract.FOUNDER, Contract._ID, Contract.SELECTION_DELETED + " AND " + Contract._ID +
+                    " NOT IN (SELECT " + Contract.FOUNDER_ID + " FROM " + Contract.FOUNDER_CHANGES + ")" },
+            { Contract.FOUNDER_COLD, Contract._ID, Contract._ID + " NOT IN (SELECT " + Contract._ID +
+                    " FROM " + Contract.FOUNDER + ")" },
+            { Contract.FOUNDER_SEARCH, "docid", "docid NOT IN (SELECT " + Contract._ID + " FROM " +
+                    Contract.FOUNDER + ")" },
+            { Contract.FOUNDER_CHANGES, Contract.SEQ, Contract.FOUNDER_ID + " NOT IN (SELECT " + Contract._ID +
+                    " FROM " + Contract.FOUNDER + ")" },
+            { Contract.PHOTO_VALIDATOR, "rowid", Contract.FOUNDER_ID + " NOT IN (SELECT " + Contract._ID +
+                    " FROM " + Contract.FOUNDER + ")" },
+            { Contract.FOUNDER_FACETS, "rowid", Contract.FACET_COUNT + " <= 0" }
+    };
+
+    private final SQLiteDatabase mDatabase;
+
+    /**
+     * True if we may run the full VACUUM that turns on incremental vacuum.
+     */
+    private final boolean mAllowRebuild;
+
+    /**
+     * Time, on the elapsed realtime clock, by which we must stop starting new work.
+     */
+    private final long mDeadline;
+
+    private int mFoundersRemoved = 0;
+    private int mRowsRemoved = 0;
+    private long mSizeBefore;
+    private long mFreeBefore;
+    private long mSizeAfter;
+    private long mFreeAfter;
+
+    /**
+     * Normal constructor.
+     *
+     * @param database The writable database
+     * @param budgetMillis How long the pass may run, in milliseconds
+     * @param allowRebuild True if the pass may rebuild the whole database, which takes
+     *                     as long as the database is large; only when the device is idle
+     */
+    public Maintenance(SQLiteDatabase database, long budgetMillis, boolean allowRebuild) {
+        mDatabase = database;
+        mAllowRebuild = allowRebuild;
+        mDeadline = SystemClock.elapsedRealtime() + budgetMillis;
+    }
+
+    /**
+     * Run the pass: remove leftover rows, analyze, then vacuum, for as long as the
+     * budget lasts.  Must not be called inside a transaction, since VACUUM can't run in one.
+     */
+    public void run() {
+        mSizeBefore = pragmaLong("page_count") * pragmaLong("page_size");
+        mFreeBefore = pragmaLong("freelist_count") * pragmaLong("page_size");
+
+        for (String[] leftover : LEFTOVERS) {
+            int removed = removeLeftovers(leftover[0], leftover[1], leftover[2]);
+
+            if (leftover[0].equals(Contract.FOUNDER)) {
+                mFoundersRemoved = removed;
+            }
+
+            mRowsRemoved += removed;
+        }
+
+        if (!isOverBudget()) {
+            mDatabase.execSQL("ANALYZE");
+        }
+
+        if (!isOverBudget()) {
+            vacuum();
+        }
+
+        mSizeAfter = pragmaLong("page_count") * pragmaLong("page_size");
+        mFreeAfter = pragmaLong("freelist_count") * pragmaLong("page_size");
+
+        Log.i(TAG, "run: removed " + mRowsRemoved + " rows; size " + mSizeBefore + " -> " + mSizeAfter +
+                " bytes, free " + mFreeBefore + " -> " + mFreeAfter + " bytes");
+    }
+
+    /**
+     * Delete rows matching a selection, a batch per transaction, until there are none
+     * left or the budget runs out.
+     *
+     * @param table The table to clean
+     * @param key The table's key column
+     * @param selection Selection of the rows to remove
+     * @return The number of rows removed
+     */
+    private int removeLeftovers(String table, String key, String selection) {
+        SQLiteStatement delete = mDatabase.compileStatement("DELETE FROM " + table + " WHERE " + key +
+                " IN (SELECT " + key + " FROM " + table + " WHERE " + selection + " LIMIT " + DELETE_BATCH_SIZE + ")");
+        int removed = 0;
+
+        try {
+            while (!isOverBudget()) {
+                int count;
+
+                mDatabase.beginTransaction();
+
+                try {
+                    count = delete.executeUpdateDelete();
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+
+                removed += count;
+
+                if (count < DELETE_BATCH_SIZE) {
+                    break;
+                }
+            }
+        } finally {
+            delete.close();
+        }
+
+        return removed;
+    }
+
+    /**
+     * Return free pages to the file system.  A database created before we turned on
+     * incremental vacuum has to be rebuilt once with a full VACUUM for the setting to
+     * take effect; that is the one step the budget can't bound, so we only start it
+     * with budget in hand, and only when our caller allows it.  Until then the free
+     * pages stay in the file for SQLite to reuse.  After that we release a few pages
+     * at a time.
+     */
+    private void vacuum() {
+        try {
+            if (pragmaLong("auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                if (!mAllowRebuild) {
+                    return;
+                }
+
+                mDatabase.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                mDatabase.execSQL("VACUUM");
+                return;
+            }
+
+            while (!isOverBudget() && pragmaLong("freelist_count") > 0) {
+                Cursor result = mDatabase.rawQuery("PRAGMA incremental_vacuum(" + VACUUM_BATCH_PAGES + ")", null);
+
+                try {
+                    // The pragma does its work as the cursor is filled.
+                    result.getCount();
+                } finally {
+                    result.close();
+                }
+            }
+        } catch (SQLException e) {
+            // Another connection is busy; the next pass will try again.
+            Log.w(TAG, "vacuum: " + e);
+        }
+    }
+
+    /**
+     * @param pragma A pragma that returns a single number
+     * @return Its value
+     */
+    private long pragmaLong(String pragma) {
+        return DatabaseUtils.longForQuery(mDatabase, "PRAGMA " + pragma, null);
+    }
+
+    /**
+     * @return True if the pass has used up its time budget
+     */
+    private boolean isOverBudget() {
+        return SystemClock.elapsedRealtime() >= mDeadline;
+    }
+
+    /**
+     * @return The number of founders removed
+     */
+    public int getFoundersRemoved() {
+        return mFoundersRemoved;
+    }
+
+    /**
+     * @return The number of rows removed from every table
+     */
+    public int getRowsRemoved() {
+        return mRowsRemoved;
+    }
+
+    /**
+     * @return The size of the database file before the pass, in bytes
+     */
+    public long getSizeBefore() {
+        return mSizeBefore;
+    }
+
+    /**
+     * @return The bytes in free pages before the pass
+     */
+    public long getFreeBefore() {
+        return mFreeBefore;
+    }
+
+    /**
+     * @return The size of the database file after the pass, in bytes
+     */
+    public long getSizeAfter() {
+        return mSizeAfter;
+    }
+
+    /**
+     * @return The bytes in free pages after the pass
+     */
+    public long getFreeAfter() {
+        return mFreeAfter;
+    }
+}
@@ -0,0 +1,73 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step in the schema history of the CET Founders database.  Each step alters
+ * the schema in place to move it from version - 1 to version, keeping whatever
+ * rows are already stored.
+ */
+public abstract class Migration {
+    /**
+     * The schema version this step produces.
+     */
+    private final int mVersion;
+
+    /**
+     * Normal constructor.
+     *
+     * @param version The schema version this step produces
+     */
+    public Migration(int version) {
+        mVersion = version;
+    }
+
+    /**
+     * @return The schema version this step produces
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Alter the schema from version - 1 to version.
+     *
+     * @param db The database to modify, already inside a transaction
+     */
+    public abstract void migrate(SQLiteDatabase db);
+
+    /**
+     * Run, in order, every step needed to bring a database from one version to another.
+     * The steps must be sorted by version with no gaps, so that any version between the
+     * first step's predecessor and the last step can be upgraded.
+     *
+     * @param db The database to modify
+     * @param fromVersion The schema version the database has now
+     * @param toVersion The schema version we want
+     * @param steps The full schema history, oldest step first
+     */
+    public static void migrate(SQLiteDatabase db, int fromVersion, int toVersion, Migration... steps) {
+        int version = fromVersion;
+
+        for (Migration step : steps) {
+            if (step.getVersion() <= version) {
+                continue;
+            }
+
+            if (step.getVersion() > toVersion) {
+                break;
+            }
+
+            if (step.getVersion() != version + 1) {
+                throw new IllegalStateException("No migration from version " + version + " to " + step.getVersion());
+            }
+
+            step.migrate(db);
+            version = step.getVersion();
+        }
+
+        if (version != toVersion) {
+            throw new IllegalStateException("No migration from version " + version + " to " + toVersion);
+        }
+    }
+}
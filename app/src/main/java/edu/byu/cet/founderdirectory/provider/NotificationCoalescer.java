@@ -0,0 +1,233 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the change notifications FounderProvider would otherwise send one row at
+ * a time, and sends each distinct URI once.  Changes are held for a short window, or
+ * for as long as notifications are suspended (e.g. around a transaction or a page of
+ * sync), then flushed together.  Suspending only holds the changes made on the thread
+ * that suspended, so a user's edit made while sync holds its own batch still goes out
+ * after the usual window.  If only a few rows changed we send their item URIs; once too
+ * many pile up, or anything touched the collection as a whole, we send the collection
+ * URI alone, which also reaches observers of every row.
+ */
+public class NotificationCoalescer {
+    /**
+     * Default time, in milliseconds, we hold a change before sending it.
+     */
+    public static final long DEFAULT_WINDOW = 100;
+
+    /**
+     * Most item URIs we'll send individually before collapsing to the collection URI.
+     */
+    private static final int MAX_ITEM_URIS = 32;
+
+    /**
+     * URI that stands for every row; sending it supersedes any item URI.
+     */
+    private final Uri mCollectionUri;
+
+    /**
+     * Changes waiting to be sent: either a few item URIs, or the collection URI alone.
+     */
+    private class Pending {
+        /**
+         * Item URIs waiting to be sent.
+         */
+        final Set<Uri> uris = new LinkedHashSet<>();
+
+        /**
+         * Whether the collection URI is waiting to be sent.
+         */
+        boolean collectionChanged = false;
+
+        /**
+         * Number of outstanding suspend() calls, for a thread's own changes.
+         */
+        int suspendCount = 0;
+
+        /**
+         * Record that content at the given URI changed.
+         *
+         * @param uri An item URI, or the collection URI
+         */
+        void add(Uri uri) {
+            if (!collectionChanged) {
+                if (uri.equals(mCollectionUri) || uris.size() >= MAX_ITEM_URIS) {
+                    collectionChanged = true;
+                    uris.clear();
+                } else {
+                    uris.add(uri);
+                }
+            }
+        }
+
+        /**
+         * Move these changes into another set of pending changes.
+         *
+         * @param other Where the changes go
+         */
+        void moveTo(Pending other) {
+            if (collectionChanged) {
+                other.add(mCollectionUri);
+            } else {
+                for (Uri uri : uris) {
+                    other.add(uri);
+                }
+            }
+
+            collectionChanged = false;
+            uris.clear();
+        }
+    }
+
+    /**
+     * Handler on which we schedule window flushes.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Changes waiting for the window to end; guarded by this.
+     */
+    private final Pending mPending = new Pending();
+
+    /**
+     * Changes each thread made while it had notifications suspended.
+     */
+    private final ThreadLocal<Pending> mHeld = new ThreadLocal<Pending>() {
+        @Override
+        protected Pending initialValue() {
+            return new Pending();
+        }
+    };
+
+    /**
+     * Resolver through which we send notifications.
+     */
+    private final ContentResolver mResolver;
+
+    /**
+     * Whether a window flush is already scheduled.
+     */
+    private boolean mFlushScheduled = false;
+
+    /**
+     * Current coalescing window in milliseconds.
+     */
+    private long mWindow = DEFAULT_WINDOW;
+
+    /**
+     * Task that flushes at the end of a window.
+     */
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (NotificationCoalescer.this) {
+                mFlushScheduled = false;
+            }
+
+            flush();
+        }
+    };
+
+    /**
+     * Normal constructor.
+     *
+     * @param resolver Resolver through which to send notifications
+     * @param collectionUri URI that covers every row this coalescer reports
+     */
+    public NotificationCoalescer(ContentResolver resolver, Uri collectionUri) {
+        mResolver = resolver;
+        mCollectionUri = collectionUri;
+    }
+
+    /**
+     * Record that content at the given URI changed.
+     *
+     * @param uri An item URI, or the collection URI if we can't tell which rows changed
+     */
+    public void changed(Uri uri) {
+        Pending held = mHeld.get();
+
+        if (held.suspendCount > 0) {
+            held.add(uri);
+            return;
+        }
+
+        synchronized (this) {
+            mPending.add(uri);
+
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mHandler.postDelayed(mFlushTask, mWindow);
+            }
+        }
+    }
+
+    /**
+     * Send every pending notification now.
+     */
+    public void flush() {
+        List<Uri> uris = new ArrayList<>();
+
+        synchronized (this) {
+            if (mPending.collectionChanged) {
+                uris.add(mCollectionUri);
+            } else {
+                uris.addAll(mPending.uris);
+            }
+
+            mPending.collectionChanged = false;
+            mPending.uris.clear();
+        }
+
+        // Notify outside the lock; observers may call straight back into the provider.
+        for (Uri uri : uris) {
+            mResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Hold the notifications for changes this thread makes until a matching resume()
+     * on the same thread.  Calls nest.
+     */
+    public void suspend() {
+        ++mHeld.get().suspendCount;
+    }
+
+    /**
+     * Undo one suspend() made on this thread.  When the last one is undone, the
+     * changes it held are sent, along with any others that are pending.
+     */
+    public void resume() {
+        Pending held = mHeld.get();
+
+        if (held.suspendCount == 0 || --held.suspendCount > 0) {
+            return;
+        }
+
+        synchronized (this) {
+            held.moveTo(mPending);
+        }
+
+        flush();
+    }
+
+    /**
+     * Change how long we hold a change before sending it.
+     *
+     * @param window The new window in milliseconds; zero sends on the next message loop
+     */
+    public synchronized void setWindow(long window) {
+        mWindow = Math.max(0, window);
+    }
+}
@@ -0,0 +1,221 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache of whole founder rows keyed by _id, so repeated
+ * lookups of one founder don't each go to disk.  Writers invalidate exactly the rows
+ * they touch, or everything when they can't tell which rows those are.  A reader may
+ * see the old row until the writer's transaction commits, so writers also bracket
+ * their work with beginWrite() and endWrite(): a reader notes the generation before
+ * it queries, and its row is only cached if no write was running or finished since.
+ */
+public class RowCache {
+    /**
+     * Most rows we keep.
+     */
+    private final int mMaxSize;
+
+    /**
+     * Cached rows, least recently used first.
+     */
+    private final LinkedHashMap<Long, Row> mRows;
+
+    /**
+     * Number of writes finished so far.
+     */
+    private long mGeneration = 0;
+
+    /**
+     * Number of writes running now.
+     */
+    private int mWriters = 0;
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private long mHits = 0;
+
+    /**
+     * Number of lookups that had to go to the database.
+     */
+    private long mMisses = 0;
+
+    /**
+     * Normal constructor.
+     *
+     * @param maxSize Most rows to keep
+     */
+    public RowCache(int maxSize) {
+        mMaxSize = maxSize;
+        mRows = new LinkedHashMap<Long, Row>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Row> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Look up a cached row.
+     *
+     * @param id The _id of the row
+     * @param projection The columns wanted, or null for every column
+     * @return A one-row cursor, or null if the row isn't cached or lacks a wanted column
+     */
+    public synchronized Cursor get(long id, String[] projection) {
+        Row row = mRows.get(id);
+        Cursor cursor = row != null ? row.toCursor(projection) : null;
+
+        if (cursor != null) {
+            ++mHits;
+        } else {
+            ++mMisses;
+        }
+
+        return cursor;
+    }
+
+    /**
+     * @return The current generation, to pass to put() after querying the database
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Copy the row a cursor is positioned on, and cache it unless a write has run since
+     * the caller read the generation.
+     *
+     * @param id The _id of the row
+     * @param cursor A cursor over every column of the row, positioned on it
+     * @param generation The generation from before the query
+     * @param projection The columns wanted, or null for every column
+     * @return A one-row cursor, or null if the row lacks a wanted column
+     */
+    public synchronized Cursor put(long id, Cursor cursor, long generation, String[] projection) {
+        Row row = new Row(cursor);
+
+        if (generation == mGeneration && mWriters == 0) {
+            mRows.put(id, row);
+        }
+
+        return row.toCursor(projection);
+    }
+
+    /**
+     * Note that a write to the cached table is starting.  Calls nest.
+     */
+    public synchronized void beginWrite() {
+        ++mWriters;
+    }
+
+    /**
+     * Note that a write begun with beginWrite() has committed or rolled back.
+     */
+    public synchronized void endWrite() {
+        --mWriters;
+        ++mGeneration;
+    }
+
+    /**
+     * Forget one row.
+     *
+     * @param id The _id of the row that changed
+     */
+    public synchronized void invalidate(long id) {
+        mRows.remove(id);
+    }
+
+    /**
+     * Forget every row.
+     */
+    public synchronized void invalidateAll() {
+        mRows.clear();
+    }
+
+    /**
+     * @return Number of lookups answered from the cache
+     */
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    /**
+     * @return Number of lookups that had to go to the database
+     */
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * A copy of every column of one row.
+     */
+    private static class Row {
+        final String[] columns;
+        final Object[] values;
+
+        Row(Cursor cursor) {
+            columns = cursor.getColumnNames();
+            values = new Object[columns.length];
+
+            for (int i = 0; i < columns.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        values[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        values[i] = cursor.getDouble(i);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        values[i] = cursor.getString(i);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        values[i] = cursor.getBlob(i);
+                        break;
+                    default:
+                        values[i] = null;
+                }
+            }
+        }
+
+        /**
+         * @param projection The columns wanted, or null for every column
+         * @return A one-row cursor, or null if a wanted column isn't one of ours
+         */
+        Cursor toCursor(String[] projection) {
+            String[] wanted = projection != null ? projection : columns;
+            Object[] row = new Object[wanted.length];
+
+            for (int i = 0; i < wanted.length; i++) {
+                int column = indexOf(wanted[i]);
+
+                if (column < 0) {
+                    return null;
+                }
+
+                row[i] = values[column];
+            }
+
+            MatrixCursor cursor = new MatrixCursor(wanted, 1);
+
+            cursor.addRow(row);
+
+            return cursor;
+        }
+
+        private int indexOf(String column) {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].equalsIgnoreCase(column)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
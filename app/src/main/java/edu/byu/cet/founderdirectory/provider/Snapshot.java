@@ -0,0 +1,76 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A directory snapshot: a copy of founders.db, at any schema version we can migrate
+ * from, compressed with gzip.  Its sync_state records the server version it holds,
+ * so delta sync carries on from there.  One may ship in the app's assets to seed a
+ * fresh install, or be downloaded and imported through the provider.
+ */
+public final class Snapshot {
+    /**
+     * Name of the snapshot bundled in the app's assets, if there is one.
+     */
+    public static final String ASSET = "founders.db.gz";
+
+    /**
+     * Size of the buffer we inflate through.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Inflate a snapshot into a database file.  We write to a temporary file beside
+     * the target and rename it into place, so a failure part way never leaves a
+     * truncated database where SQLite would find it.
+     *
+     * @param compressed The gzip-compressed snapshot, which we close
+     * @param target The database file to create
+     * @throws IOException If the snapshot can't be read or the file can't be written
+     */
+    public static void inflate(InputStream compressed, File target) throws IOException {
+        File partial = new File(target.getPath() + ".partial");
+        InputStream in = null;
+        OutputStream out = null;
+
+        try {
+            in = new GZIPInputStream(compressed, BUFFER_SIZE);
+            out = new FileOutputStream(partial);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+
+            out.close();
+            out = null;
+
+            if (!partial.renameTo(target)) {
+                throw new IOException("Unable to rename " + partial + " to " + target);
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+
+            if (in != null) {
+                in.close();
+            } else {
+                compressed.close();
+            }
+
+            // Only left behind if something failed
+            partial.delete();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Folds founder names into the keys the list sorts and sections on.  A sort key is
+ * the name decomposed with its accents dropped, lower-cased, with runs of whitespace
+ * collapsed and anything before the first letter or digit removed, so that an
+ * accented or space-prefixed name files among its plain-letter neighbours.  The keys
+ * are plain text, so SQLite can compare and index them byte by byte, and they don't
+ * change when the device's collation tables do.
+ */
+public final class SortKey {
+    /**
+     * Section for names that don't start with a letter or digit.
+     */
+    public static final String OTHER_SECTION = "#";
+
+    /**
+     * Combining marks left behind when a character is decomposed.
+     */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Runs of whitespace inside a name.
+     */
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /**
+     * Anything before the first letter or digit.
+     */
+    private static final Pattern LEADING = Pattern.compile("^[^\\p{L}\\p{N}]+");
+
+    private SortKey() {
+    }
+
+    /**
+     * @param name A founder's preferred full name, or null
+     * @return The name's sort key; never null
+     */
+    public static String of(String name) {
+        if (name == null) {
+            return "";
+        }
+
+        String key = Normalizer.normalize(name, Normalizer.Form.NFD);
+
+        key = MARKS.matcher(key).replaceAll("");
+        key = LEADING.matcher(key).replaceAll("");
+        key = SPACES.matcher(key).replaceAll(" ").trim();
+
+        return key.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param sortKey A sort key from of()
+     * @return The list section it belongs in: its first letter or digit, upper-cased
+     */
+    public static String sectionOf(String sortKey) {
+        if (sortKey == null || sortKey.isEmpty()) {
+            return OTHER_SECTION;
+        }
+
+        int first = sortKey.codePointAt(0);
+
+        if (!Character.isLetterOrDigit(first)) {
+            return OTHER_SECTION;
+        }
+
+        return new String(Character.toChars(first)).toUpperCase(Locale.ROOT);
+    }
+}
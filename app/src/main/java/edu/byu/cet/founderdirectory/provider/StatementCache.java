@@ -0,0 +1,122 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache of compiled SQLiteStatements keyed by their SQL.
+ * A statement holds its own bindings, so it can only be used by one thread at a time:
+ * callers check a statement out with acquire() and hand it back with release().  If
+ * two threads want the same SQL at once, the second gets a freshly compiled copy.
+ * The lock is only held while touching the map, never while a statement executes,
+ * so a thread inside a transaction can't deadlock against one waiting for it.
+ */
+public class StatementCache {
+    /**
+     * Most statements we keep compiled.
+     */
+    private final int mMaxSize;
+
+    /**
+     * Idle statements, least recently used first.
+     */
+    private final LinkedHashMap<String, SQLiteStatement> mStatements;
+
+    /**
+     * Number of acquire() calls that reused a compiled statement.
+     */
+    private long mHits = 0;
+
+    /**
+     * Number of acquire() calls that had to compile a statement.
+     */
+    private long mMisses = 0;
+
+    /**
+     * Normal constructor.
+     *
+     * @param maxSize Most statements to keep compiled
+     */
+    public StatementCache(int maxSize) {
+        mMaxSize = maxSize;
+        mStatements = new LinkedHashMap<String, SQLiteStatement>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > mMaxSize) {
+                    eldest.getValue().close();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Check out a compiled statement for the given SQL, compiling it if necessary.
+     *
+     * @param db The database the statement runs against
+     * @param sql The statement text, with ? for every parameter
+     * @return A statement with cleared bindings; pass it to release() when done
+     */
+    public SQLiteStatement acquire(SQLiteDatabase db, String sql) {
+        SQLiteStatement statement;
+
+        synchronized (this) {
+            statement = mStatements.remove(sql);
+
+            if (statement != null) {
+                ++mHits;
+            } else {
+                ++mMisses;
+            }
+        }
+
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+        }
+
+        statement.clearBindings();
+
+        return statement;
+    }
+
+    /**
+     * Return a statement obtained from acquire() so it can be reused.
+     *
+     * @param sql The SQL the statement was acquired for
+     * @param statement The statement
+     */
+    public synchronized void release(String sql, SQLiteStatement statement) {
+        SQLiteStatement previous = mStatements.put(sql, statement);
+
+        // Another thread already returned a copy of this statement; keep just one.
+        if (previous != null && previous != statement) {
+            previous.close();
+        }
+    }
+
+    /**
+     * @return Number of acquire() calls that reused a compiled statement
+     */
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    /**
+     * @return Number of acquire() calls that had to compile a statement
+     */
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return Number of idle compiled statements currently held
+     */
+    public synchronized int size() {
+        return mStatements.size();
+    }
+}
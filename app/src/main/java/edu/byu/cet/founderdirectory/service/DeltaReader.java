@@ -0,0 +1,214 @@
+package edu.byu.cet.founderdirectory.service;
+
+import android.content.ContentValues;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.byu.cet.founderdirectory.provider.FounderProvider;
+
+/**
+ * Reads a getupdatessince response one founder at a time straight off the connection.
+ * Each founder is written into a ContentValues the caller supplies, so the caller can
+ * reuse the same few instances for every batch and memory stays flat however large
+ * the delta is.
+ *
+ * A server that pages its deltas answers with one page, an object holding the page's
+ * founders and the continuation token for the next page:
+ *
+ *     { "founders": [ {...}, ... ], "next": "token" }
+ *
+ * where next is null or absent on the last page.  An older server answers with the
+ * bare array of founders, which we treat as the one and only page.
+ */
+public class DeltaReader implements Closeable {
+    /**
+     * Name of the founder array in a page.
+     */
+    private static final String PAGE_FOUNDERS = "founders";
+
+    /**
+     * Name of the continuation token in a page.
+     */
+    private static final String PAGE_NEXT = "next";
+
+    /**
+     * Founder fields we keep; anything else the server sends is skipped.
+     */
+    private static final Set<String> FIELDS = new HashSet<>();
+
+    static {
+        for (String field : FounderProvider.Contract.allFieldsIdVersion()) {
+            if (!field.equals(FounderProvider.Contract._ID)) {
+                FIELDS.add(field);
+            }
+        }
+    }
+
+    private final JsonReader mReader;
+
+    /**
+     * True once we've stepped into the top-level array.
+     */
+    private boolean mStarted = false;
+
+    /**
+     * True if the response is a page object rather than a bare array.
+     */
+    private boolean mPaged = false;
+
+    /**
+     * Continuation token for the page after this one, if the server sent one.
+     */
+    private String mNext = null;
+
+    /**
+     * True if the last founder read was deleted on the server.
+     */
+    private boolean mDeleted = false;
+
+    /**
+     * Normal constructor.
+     *
+     * @param in The response body, which we close when we're closed
+     * @throws IOException If the stream can't be decoded
+     */
+    public DeltaReader(InputStream in) throws IOException {
+        mReader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+    }
+
+    /**
+     * Read the next founder.  The server's id becomes the _id, and the rest of the
+     * record's fields are put as strings, the same way JSONObject.getString renders them.
+     * The deleted flag isn't a field we store; see isDeleted().
+     *
+     * @param values Where to put the founder; cleared first
+     * @return False if there are no more founders
+     * @throws IOException If the response is malformed or the connection fails
+     */
+    public boolean next(ContentValues values) throws IOException {
+        if (!mStarted) {
+            mStarted = true;
+
+            if (mReader.peek() == JsonToken.BEGIN_OBJECT) {
+                mPaged = true;
+                mReader.beginObject();
+                readPageFields();
+            }
+
+            mReader.beginArray();
+        }
+
+        if (!mReader.hasNext()) {
+            mReader.endArray();
+
+            if (mPaged) {
+                readPageFields();
+                mReader.endObject();
+                mPaged = false;
+            }
+
+            return false;
+        }
+
+        values.clear();
+        mDeleted = false;
+        mReader.beginObject();
+
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+
+            if (name.equals(FounderProvider.Contract.SERVER_ID)) {
+                values.put(FounderProvider.Contract._ID, nextString());
+            } else if (name.equals(FounderProvider.Contract.DELETED)) {
+                mDeleted = FounderProvider.Contract.FLAG_DELETED.equalsIgnoreCase(nextString());
+            } else if (FIELDS.contains(name)) {
+                values.put(name, nextString());
+            } else {
+                mReader.skipValue();
+            }
+        }
+
+        mReader.endObject();
+
+        return true;
+    }
+
+    /**
+     * @return True if the server deleted the founder last read by next()
+     */
+    public boolean isDeleted() {
+        return mDeleted;
+    }
+
+    /**
+     * @return The token to ask for the next page with, or null if this was the last
+     *         page; only known once next() has returned false
+     */
+    public String getContinuation() {
+        return mNext;
+    }
+
+    /**
+     * Read the page's fields up to its founder array, or up to the end of the page
+     * once we're past the array.
+     *
+     * @throws IOException If the page is malformed
+     */
+    private void readPageFields() throws IOException {
+        while (mReader.hasNext()) {
+            String name = mReader.nextName();
+
+            if (name.equals(PAGE_FOUNDERS)) {
+                return;
+            } else if (name.equals(PAGE_NEXT) && mReader.peek() != JsonToken.NULL) {
+                mNext = mReader.nextString();
+            } else {
+                mReader.skipValue();
+            }
+        }
+    }
+
+    /**
+     * @param values A founder read by next()
+     * @return The founder's version, or 0 if it has none we can read
+     */
+    public static int versionOf(ContentValues values) {
+        try {
+            return Integer.parseInt(values.getAsString(FounderProvider.Contract.VERSION));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Read a scalar value as a string.  A JSON null becomes "null", as it did when we
+     * parsed the whole response with JSONObject.
+     *
+     * @return The value
+     * @throws IOException If the next value isn't a scalar
+     */
+    private String nextString() throws IOException {
+        JsonToken token = mReader.peek();
+
+        if (token == JsonToken.NULL) {
+            mReader.nextNull();
+            return "null";
+        } else if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(mReader.nextBoolean());
+        }
+
+        return mReader.nextString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
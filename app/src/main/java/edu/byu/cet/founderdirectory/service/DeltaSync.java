@@ -0,0 +1,225 @@
+package edu.byu.cet.founderdirectory.service;
+
+import android.content.ContentValues;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.byu.cet.founderdirectory.provider.FounderProvider;
+import edu.byu.cet.founderdirectory.utilities.HttpHelper;
+
+/**
+ * Downloads and applies the server's changes between our version and its current one,
+ * a page at a time.  Each page's last batch commits the token for the page after it
+ * along with the founders, so a sync that's interrupted resumes from the page it was
+ * on rather than from the beginning.
+ */
+public class DeltaSync {
+    private static final String TAG = DeltaSync.class.getSimpleName();
+
+    /**
+     * Where the pages of changes come from.
+     */
+    public interface PageSource {
+        /**
+         * Fetch one page of changes and hand its body to a handler.
+         *
+         * @param appliedVersion Highest server version we've already applied
+         * @param continuation Token for the page to fetch, or null for the first page
+         *                     after appliedVersion
+         * @param handler What reads the page
+         * @return True if the page arrived and the handler read it without error
+         */
+        boolean fetch(int appliedVersion, String continuation, HttpHelper.StreamHandler handler);
+    }
+
+    /**
+     * Where the changes go.
+     */
+    public interface BatchSink {
+        /**
+         * Apply a batch of changes, and record the sync state with them, in one
+         * transaction.  The lists are cleared and reused once this returns.
+         *
+         * @param deletes IDs of founders removed on the server
+         * @param upserts Full founder records to insert or update
+         * @param state Sync state entries to record with the batch
+         */
+        void apply(List<Long> deletes, ArrayList<ContentValues> upserts, ContentValues state);
+    }
+
+    private final PageSource mSource;
+    private final BatchSink mSink;
+    private final int mBatchSize;
+
+    /**
+     * When this sync started, recorded as the last sync time once it completes.
+     */
+    private final long mSyncTime;
+
+    /**
+     * Normal constructor.
+     *
+     * @param source Where the pages come from
+     * @param sink Where the changes go
+     * @param batchSize Most changes to apply in one batch
+     * @param syncTime When this sync started
+     */
+    public DeltaSync(PageSource source, BatchSink sink, int batchSize, long syncTime) {
+        mSource = source;
+        mSink = sink;
+        mBatchSize = batchSize;
+        mSyncTime = syncTime;
+    }
+
+    /**
+     * Apply pages of changes until the server has no more, or one fails.
+     *
+     * @param maxVersion Highest server version we've already applied
+     * @param serverMaxVersion Server version to bring ourselves up to
+     * @param continuation Token for the page to resume from, or null to start afresh
+     * @return True if the server sent any changes
+     */
+    public boolean run(int maxVersion, int serverMaxVersion, String continuation) {
+        int appliedVersion = maxVersion;
+        boolean changesMade = false;
+
+        while (true) {
+            Page page = runPage(appliedVersion, serverMaxVersion, continuation);
+
+            changesMade |= page.changesMade;
+            appliedVersion = page.appliedVersion;
+
+            if (!page.isComplete || page.next == null) {
+                break;
+            }
+
+            if (page.next.equals(continuation)) {
+                // The server isn't moving on; try again next sync rather than loop here.
+                Log.d(TAG, "run: continuation repeated " + continuation);
+                break;
+            }
+
+            continuation = page.next;
+        }
+
+        return changesMade;
+    }
+
+    /**
+     * Download and apply one page of server changes.  We parse the response as it streams
+     * in, a founder at a time, and apply a batch whenever one fills, so a large page needs
+     * no more memory than a small one and the first founders are saved while the rest
+     * are still arriving.
+     *
+     * @param maxVersion Highest server version we've already applied
+     * @param serverMaxVersion Server version this sync brings us up to
+     * @param continuation Token for the page, or null
+     * @return What the page held and how far we got through it
+     */
+    private Page runPage(final int maxVersion, final int serverMaxVersion, String continuation) {
+        final Page page = new Page(maxVersion);
+
+        try {
+            mSource.fetch(maxVersion, continuation, new HttpHelper.StreamHandler() {
+                @Override
+                public void handle(InputStream inputStream) throws IOException {
+                    DeltaReader reader = new DeltaReader(inputStream);
+                    List<Long> deletes = new ArrayList<>();
+                    ArrayList<ContentValues> upserts = new ArrayList<>();
+
+                    // The records of one batch, reused for every batch after it.
+                    List<ContentValues> pool = new ArrayList<>();
+
+                    try {
+                        while (true) {
+                            if (pool.size() == upserts.size()) {
+                                pool.add(new ContentValues());
+                            }
+
+                            ContentValues founder = pool.get(upserts.size());
+
+                            if (!reader.next(founder)) {
+                                break;
+                            }
+
+                            page.changesMade = true;
+
+                            // The server sends updates in version order, so once a batch commits we
+                            // never need anything at or below its highest version again.
+                            page.appliedVersion = Math.max(page.appliedVersion, DeltaReader.versionOf(founder));
+
+                            if (reader.isDeleted()) {
+                                // We need to delete this founder
+                                deletes.add(founder.getAsLong(FounderProvider.Contract._ID));
+                            } else {
+                                // We need to insert or update this founder
+                                upserts.add(founder);
+                            }
+
+                            if (deletes.size() + upserts.size() >= mBatchSize) {
+                                ContentValues state = new ContentValues();
+
+                                state.put(FounderProvider.Contract.STATE_SERVER_VERSION, page.appliedVersion);
+                                apply(deletes, upserts, state);
+                            }
+                        }
+                    } finally {
+                        reader.close();
+                    }
+
+                    // The page's last batch also records where the next page starts, or,
+                    // on the last page, marks the sync as finished.
+                    ContentValues state = new ContentValues();
+
+                    page.next = reader.getContinuation();
+
+                    if (page.next != null) {
+                        state.put(FounderProvider.Contract.STATE_SERVER_VERSION, page.appliedVersion);
+                        state.put(FounderProvider.Contract.STATE_CONTINUATION, page.next);
+                    } else {
+                        page.appliedVersion = Math.max(page.appliedVersion, serverMaxVersion);
+                        state.put(FounderProvider.Contract.STATE_SERVER_VERSION, page.appliedVersion);
+                        state.put(FounderProvider.Contract.STATE_CONTINUATION, "");
+                        state.put(FounderProvider.Contract.STATE_PHASE, FounderProvider.Contract.PHASE_COMPLETE);
+                        state.put(FounderProvider.Contract.STATE_LAST_SYNC_TIME, mSyncTime);
+                    }
+
+                    apply(deletes, upserts, state);
+                    page.isComplete = true;
+                }
+            });
+        } catch (Exception e) {
+            // E.g., a malformed record; whatever batches committed before it stay applied.
+            Log.d(TAG, "runPage: " + e);
+        }
+
+        return page;
+    }
+
+    /**
+     * Hand a batch to the sink, then empty it for reuse.
+     */
+    private void apply(List<Long> deletes, ArrayList<ContentValues> upserts, ContentValues state) {
+        mSink.apply(deletes, upserts, state);
+        deletes.clear();
+        upserts.clear();
+    }
+
+    /**
+     * Progress through one page of server changes.
+     */
+    private static class Page {
+        int appliedVersion;
+        boolean changesMade = false;
+        boolean isComplete = false;
+        String next = null;
+
+        Page(int appliedVersion) {
+            this.appliedVersion = appliedVersion;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package edu.byu.cet.founderdirectory.service;
+
+import android.content.ContentValues;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A batch of local changes for mutatefounders.php, which applies many founders'
+ * changes in one request.  The batch is a compact JSON array, one object per founder:
+ *
+ *     [ { "i": 12, "o": "u", "v": 34, "c": "...", "f": { "f1": "...", ... } }, ... ]
+ *
+ * where i is our ID for the founder, o is the operation (n for new, u for update, d
+ * for delete), v is the version we last saw, and f holds the founder's fields under
+ * the same short keys the single-founder endpoints use.  A new founder also carries
+ * c, a key that stays the same every time we send it, so a server that already added
+ * it from a request whose answer we lost hands back the same founder rather than
+ * adding a second.  The server answers with one result per founder:
+ *
+ *     [ { "i": 12, "ok": true, "v": 35, "id": 12, "founder": { ... } }, ... ]
+ *
+ * where v is the founder's new version, id is the server's ID for a new founder, and
+ * founder is the server's copy of an updated founder.
+ */
+public class MutationBatch {
+    public static final String OP_NEW = "n";
+    public static final String OP_UPDATE = "u";
+    public static final String OP_DELETE = "d";
+
+    /**
+     * What the server did with one founder's changes.
+     */
+    public static class Result {
+        /**
+         * True if the server applied the changes.
+         */
+        public boolean ok = false;
+
+        /**
+         * The founder's version after the changes, or 0 if we weren't told.
+         */
+        public int version = 0;
+
+        /**
+         * The server's ID for a new founder, or null.
+         */
+        public String serverId = null;
+
+        /**
+         * The server's copy of an updated founder, or null.
+         */
+        public ContentValues founder = null;
+    }
+
+    private final StringWriter mBuffer = new StringWriter();
+    private final JsonWriter mWriter = new JsonWriter(mBuffer);
+    private int mCount = 0;
+
+    /**
+     * Normal constructor.
+     *
+     * @throws IOException Never, since we write to memory
+     */
+    public MutationBatch() throws IOException {
+        mWriter.beginArray();
+    }
+
+    /**
+     * Add one founder's changes to the batch.
+     *
+     * @param id Our ID for the founder
+     * @param operation OP_NEW, OP_UPDATE or OP_DELETE
+     * @param version The version we last saw
+     * @param key The new founder's request key, or null
+     * @param fields The founder's fields by short key, or null for a delete
+     * @throws IOException Never, since we write to memory
+     */
+    public void add(long id, String operation, int version, String key, Map<String, String> fields)
+            throws IOException {
+        mWriter.beginObject();
+        mWriter.name("i").value(id);
+        mWriter.name("o").value(operation);
+        mWriter.name("v").value(version);
+
+        if (key != null) {
+            mWriter.name("c").value(key);
+        }
+
+        if (fields != null) {
+            mWriter.name("f").beginObject();
+
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                mWriter.name(field.getKey()).value(field.getValue());
+            }
+
+            mWriter.endObject();
+        }
+
+        mWriter.endObject();
+        mWriter.flush();
+        ++mCount;
+    }
+
+    /**
+     * @return The number of founders in the batch
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * @return Roughly how many characters the batch takes, so far
+     */
+    public int length() {
+        return mBuffer.getBuffer().length();
+    }
+
+    /**
+     * Close the batch.  Nothing more may be added.
+     *
+     * @return The batch as it goes to the server
+     * @throws IOException Never, since we write to memory
+     */
+    public String finish() throws IOException {
+        mWriter.endArray();
+        mWriter.close();
+
+        return mBuffer.toString();
+    }
+
+    /**
+     * Read the server's answer to a batch.  Only a server that says it has no batch
+     * endpoint has certainly not applied the batch.  Any other answer we can't read,
+     * or no answer at all, might have come after the server applied it, so the caller
+     * must leave those changes pending rather than send them again another way.
+     *
+     * @param statusCode HTTP status of the answer, or -1 if there was none
+     * @param body The answer's body, or null
+     * @return Result for each founder the server reported on, keyed by our ID, or null
+     *         if the server doesn't take batches
+     * @throws IOException If we can't tell what the server did with the batch
+     */
+    public static Map<Long, Result> readResponse(int statusCode, String body) throws IOException {
+        if (statusCode == HttpURLConnection.HTTP_NOT_FOUND || statusCode == HttpURLConnection.HTTP_BAD_METHOD ||
+                statusCode == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+            return null;
+        }
+
+        if (statusCode != HttpURLConnection.HTTP_OK || body == null) {
+            throw new IOException("No usable answer to batch, status " + statusCode);
+        }
+
+        try {
+            return parseResults(body.trim());
+        } catch (IllegalStateException | NumberFormatException e) {
+            // JsonReader reports an unexpected token this way
+            throw new IOException("Unreadable answer to batch: " + e);
+        }
+    }
+
+    /**
+     * Read the server's response to a batch.
+     *
+     * @param response The response body
+     * @return Result for each founder the server reported on, keyed by our ID
+     * @throws IOException If the response isn't a list of results
+     */
+    public static Map<Long, Result> parseResults(String response) throws IOException {
+        Map<Long, Result> results = new HashMap<>();
+        JsonReader reader = new JsonReader(new StringReader(response));
+
+        try {
+            reader.beginArray();
+
+            while (reader.hasNext()) {
+                Result result = new Result();
+                Long id = null;
+
+                reader.beginObject();
+
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else if (name.equals("i")) {
+                        id = reader.nextLong();
+                    } else if (name.equals("ok")) {
+                        result.ok = reader.nextBoolean();
+                    } else if (name.equals("v")) {
+                        result.version = reader.nextInt();
+                    } else if (name.equals("id")) {
+                        result.serverId = reader.nextString();
+                    } else if (name.equals("founder")) {
+                        result.founder = readFounder(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+
+                reader.endObject();
+
+                if (id != null) {
+                    results.put(id, result);
+                }
+            }
+
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+
+        return results;
+    }
+
+    /**
+     * Read a founder object as strings, the way JSONObject.getString renders them.
+     *
+     * @param reader Positioned at the object
+     * @return The founder's fields by name
+     * @throws IOException If the object is malformed
+     */
+    private static ContentValues readFounder(JsonReader reader) throws IOException {
+        ContentValues founder = new ContentValues();
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+
+            if (token == JsonToken.NULL) {
+                reader.nextNull();
+                founder.put(name, "null");
+            } else if (token == JsonToken.BOOLEAN) {
+                founder.put(name, Boolean.toString(reader.nextBoolean()));
+            } else if (token == JsonToken.BEGIN_ARRAY || token == JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+            } else {
+                founder.put(name, reader.nextString());
+            }
+        }
+
+        reader.endObject();
+
+        return founder;
+    }
+}
@@ -0,0 +1,208 @@
+package edu.byu.cet.founderdirectory.service;
+
+import android.os.Process;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches founder and spouse photos on a small pool of background threads, so that
+ * sync can keep applying records while the photos come in.  A photo already waiting
+ * in the queue isn't queued again.  Once its download has started, asking again marks
+ * it to be downloaded once more when the running download ends, since the founder may
+ * have a newer photo by then; however often it's asked for meanwhile, that is one more
+ * download, and never two of the same photo at once.
+ */
+public class PhotoDownloader {
+    /**
+     * Does the actual work of fetching and saving one photo.
+     */
+    public interface Fetcher {
+        /**
+         * Download and save one photo.  Called on a pool thread.
+         *
+         * @param id ID of the Founder record
+         * @param isSpouse True for the spouse photo, false for the founder's own
+         */
+        void fetch(int id, boolean isSpouse);
+    }
+
+    private final Fetcher mFetcher;
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * Photos queued but not yet started, as keys from key().
+     */
+    private final Set<String> mQueued = new HashSet<>();
+
+    /**
+     * Photos downloading now.
+     */
+    private final Set<String> mRunning = new HashSet<>();
+
+    /**
+     * Photos asked for again while downloading, to download once more when they finish.
+     */
+    private final Set<String> mRerun = new HashSet<>();
+
+    /**
+     * Photos queued, downloading, or due to run again.
+     */
+    private int mOutstanding = 0;
+
+    /**
+     * Normal constructor.
+     *
+     * @param concurrency Most photos to download at once
+     * @param fetcher What downloads each photo
+     */
+    public PhotoDownloader(int concurrency, Fetcher fetcher) {
+        mFetcher = fetcher;
+        mExecutor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new PhotoThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue a photo for download, unless it's already waiting.  If it's downloading
+     * now, it's downloaded again once that finishes.
+     *
+     * @param id ID of the Founder record
+     * @param isSpouse True for the spouse photo, false for the founder's own
+     */
+    public void enqueue(int id, boolean isSpouse) {
+        String key = key(id, isSpouse);
+
+        synchronized (this) {
+            if (mQueued.contains(key)) {
+                return;
+            }
+
+            if (mRunning.contains(key)) {
+                mRerun.add(key);
+                return;
+            }
+
+            mQueued.add(key);
+            ++mOutstanding;
+        }
+
+        submit(id, isSpouse, key);
+    }
+
+    /**
+     * Hand a queued photo to the pool.
+     *
+     * @param id ID of the Founder record
+     * @param isSpouse True for the spouse photo, false for the founder's own
+     * @param key The photo's key, already in mQueued and counted in mOutstanding
+     */
+    private void submit(final int id, final boolean isSpouse, final String key) {
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (PhotoDownloader.this) {
+                        mQueued.remove(key);
+                        mRunning.add(key);
+                    }
+
+                    boolean again;
+
+                    try {
+                        mFetcher.fetch(id, isSpouse);
+                    } finally {
+                        synchronized (PhotoDownloader.this) {
+                            mRunning.remove(key);
+                            again = mRerun.remove(key);
+
+                            if (again) {
+                                mQueued.add(key);
+                            } else {
+                                finished();
+                            }
+                        }
+                    }
+
+                    if (again) {
+                        submit(id, isSpouse, key);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // We've been shut down; the photo is left for the next sync.
+            synchronized (this) {
+                mQueued.remove(key);
+                finished();
+            }
+        }
+    }
+
+    /**
+     * Count one photo as done, and wake awaitIdle() if it was the last.  Call with the
+     * lock held.
+     */
+    private void finished() {
+        if (--mOutstanding == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait until every queued photo has been downloaded, or the time is up.
+     *
+     * @param timeoutMillis Longest to wait, in milliseconds
+     * @return True if nothing is left to download
+     * @throws InterruptedException If we're interrupted while waiting
+     */
+    public synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while (mOutstanding > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+
+            if (remaining <= 0) {
+                return false;
+            }
+
+            wait(remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * Stop taking new photos.  Those already queued are still downloaded.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    private static String key(int id, boolean isSpouse) {
+        return id + (isSpouse ? ":spouse" : ":founder");
+    }
+
+    /**
+     * Makes low-priority threads, so downloads never compete with the UI.
+     */
+    private static class PhotoThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "PhotoDownloader #" + mCount.incrementAndGet());
+        }
+    }
+}
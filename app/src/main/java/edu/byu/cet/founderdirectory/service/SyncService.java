@@ -3,29 +3,46 @@ package edu.byu.cet.founderdirectory.service;
 import android.app.IntentService;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.PowerManager;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.NotificationCompat;
+import android.text.TextUtils;
 import android.util.Log;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import edu.byu.cet.founderdirectory.LoginActivity;
 import edu.byu.cet.founderdirectory.R;
 import edu.byu.cet.founderdirectory.provider.FounderProvider;
 import edu.byu.cet.founderdirectory.utilities.HttpHelper;
 import edu.byu.cet.founderdirectory.utilities.PhotoManager;
+import edu.byu.cet.founderdirectory.utilities.Utilities;
 
 /**
  * Service to synchronize founder directory with server.
@@ -40,6 +57,16 @@ public class SyncService extends IntentService {
      */
     private static final int MAX_LIVE_TIME = 2 * 60 * 60 * 1000;
 
+    /**
+     * Time budget, in milliseconds, for one pass of database maintenance.
+     */
+    private static final long MAINTENANCE_BUDGET = 2 * 1000;
+
+    /**
+     * Least time between passes of database maintenance, in milliseconds.
+     */
+    private static final long MAINTENANCE_INTERVAL = 24 * 60 * 60 * 1000;
+
     /**
      * Flag indicating the target photo is for the Founder.
      */
@@ -50,11 +77,54 @@ public class SyncService extends IntentService {
      */
     private static final boolean PHOTO_SPOUSE = true;
 
+    /**
+     * Most photos we download at once, unless Utilities.getPhotoDownloadThreads() says
+     * otherwise.
+     */
+    private static final int PHOTO_DOWNLOAD_THREADS = 4;
+
+    /**
+     * Longest a sync waits, in milliseconds, for its photos before reporting.  Those
+     * still downloading then carry on in the background and reach the list as they land.
+     */
+    private static final long PHOTO_WAIT = 30 * 1000;
+
     /**
      * Interval, in milliseconds, between sync polling requests.
      */
     private static final int POLL_INTERVAL = 1 * 60 * 1000;
 
+    /**
+     * Version of the paged getupdatessince protocol we speak.  A server that doesn't
+     * know it ignores our paging parameters and sends everything in one response.
+     */
+    private static final int DELTA_PROTOCOL_VERSION = 2;
+
+    /**
+     * Most founders we ask the server for in one page of updates.
+     */
+    private static final int DELTA_PAGE_SIZE = 1000;
+
+    /**
+     * Most founders' changes we send to the server in one request.
+     */
+    private static final int MUTATION_BATCH_SIZE = 50;
+
+    /**
+     * Length, in characters, at which we close a batch of changes and send it.
+     */
+    private static final int MUTATION_BATCH_LENGTH = 64 * 1024;
+
+    /**
+     * Maximum number of server updates we apply to the database in one transaction.
+     */
+    private static final int SYNC_BATCH_SIZE = 200;
+
+    /**
+     * Cache file we download the directory snapshot into.
+     */
+    private static final String SNAPSHOT_FILE = "founders_snapshot.db.gz";
+
     /**
      * Key for passing session token through the intent extras.
      */
@@ -110,6 +180,22 @@ public class SyncService extends IntentService {
      */
     private String mSessionToken;
 
+    /**
+     * Downloads the photos of the founders this sync applies.
+     */
+    private PhotoDownloader mPhotos;
+
+    /**
+     * True once the server has said it has no batch endpoint, after which we send each
+     * founder's changes on its own.
+     */
+    private boolean mMutationBatchUnsupported = false;
+
+    /**
+     * This install's ID, from which we make the request key of each new founder.
+     */
+    private String mClientId;
+
     /**
      * Default constructor
      */
@@ -130,13 +216,32 @@ public class SyncService extends IntentService {
 
         // Double-check that the interval has elapsed, in case of interrupted sleep.
         if (mLastSyncTime + POLL_INTERVAL < System.currentTimeMillis()) {
-            if (synchronizeFounders() == SYNC_FOUND_SERVER_UPDATES) {
+            boolean syncResult;
+            int photoThreads = Utilities.getPhotoDownloadThreads(this, PHOTO_DOWNLOAD_THREADS);
+
+            mPhotos = new PhotoDownloader(photoThreads, new PhotoDownloader.Fetcher() {
+                @Override
+                public void fetch(int id, boolean isSpouse) {
+                    downloadPhoto(id, isSpouse);
+                }
+            });
+
+            try {
+                syncResult = synchronizeFounders();
+            } finally {
+                awaitPhotos();
+            }
+
+            if (syncResult == SYNC_FOUND_SERVER_UPDATES) {
                 // First tell the content provider that we have changes.  This is
                 // needed, e.g., when we have downloaded a new photo from the server.
                 getContentResolver().notifyChange(FounderProvider.Contract.CONTENT_URI, null);
                 // NEEDSWORK: clear image cache (better to do closer to image download code)
 
                 notifyUserOfSyncUpdates();
+            } else {
+                // Nothing came in, so this is a quiet moment to tidy the database.
+                maintainDatabaseIfDue();
             }
         }
 
@@ -157,6 +262,75 @@ public class SyncService extends IntentService {
         }).start();
     }
 
+    /**
+     * Run a pass of database maintenance if it's been MAINTENANCE_INTERVAL since the
+     * last one, and log what it did.
+     */
+    private void maintainDatabaseIfDue() {
+        long now = System.currentTimeMillis();
+        Map<String, String> state = readSyncState();
+        String lastMaintenance = state.get(FounderProvider.Contract.STATE_LAST_MAINTENANCE_TIME);
+
+        if (lastMaintenance != null && Long.parseLong(lastMaintenance) + MAINTENANCE_INTERVAL > now) {
+            return;
+        }
+
+        Bundle extras = new Bundle();
+
+        // The one-time rebuild rewrites the whole file, so leave it for when nobody's using
+        // the phone or it's on the charger.
+        extras.putBoolean(FounderProvider.Contract.EXTRA_ALLOW_REBUILD, isIdleOrCharging());
+
+        Bundle report = getContentResolver().call(FounderProvider.Contract.CONTENT_URI,
+                FounderProvider.Contract.METHOD_MAINTAIN, Long.toString(MAINTENANCE_BUDGET), extras);
+
+        if (report != null) {
+            Log.d(TAG, "maintainDatabaseIfDue: removed " + report.getInt(FounderProvider.Contract.EXTRA_COUNT) +
+                    " rows; size " + report.getLong(FounderProvider.Contract.EXTRA_SIZE_BEFORE) + " -> " +
+                    report.getLong(FounderProvider.Contract.EXTRA_SIZE_AFTER) + ", free " +
+                    report.getLong(FounderProvider.Contract.EXTRA_FREE_BEFORE) + " -> " +
+                    report.getLong(FounderProvider.Contract.EXTRA_FREE_AFTER));
+        }
+
+        setSyncState(FounderProvider.Contract.STATE_LAST_MAINTENANCE_TIME, Long.toString(now));
+    }
+
+    /**
+     * @return True if the device is plugged in or its screen is off
+     */
+    @SuppressWarnings("deprecation")
+    private boolean isIdleOrCharging() {
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+
+        if (battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0) {
+            return true;
+        }
+
+        PowerManager power = (PowerManager) getSystemService(Context.POWER_SERVICE);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH) {
+            return !power.isInteractive();
+        }
+
+        return !power.isScreenOn();
+    }
+
+    /**
+     * Give the photos this sync queued time to arrive before we report the sync.  Any
+     * still downloading after PHOTO_WAIT carry on in the background.
+     */
+    private void awaitPhotos() {
+        try {
+            if (!mPhotos.awaitIdle(PHOTO_WAIT)) {
+                Log.d(TAG, "awaitPhotos: still downloading after " + PHOTO_WAIT + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            mPhotos.shutdown();
+        }
+    }
+
     /**
      * Tell the user we've synchronized data with the server.
      */
@@ -184,15 +358,103 @@ public class SyncService extends IntentService {
     private boolean synchronizeFounders() {
         mLastSyncTime = System.currentTimeMillis();
 
-        int maxVersion = maxFounderVersion();
+        Map<String, String> state = readSyncState();
+        int maxVersion = stateInt(state, FounderProvider.Contract.STATE_SERVER_VERSION);
         int serverMaxVersion = 0;
+        boolean resumingDownload =
+                FounderProvider.Contract.PHASE_DOWNLOAD.equals(state.get(FounderProvider.Contract.STATE_PHASE));
+
+        // New founders are sent with keys made from this install's ID.
+        mClientId = state.get(FounderProvider.Contract.STATE_CLIENT_ID);
+
+        if (TextUtils.isEmpty(mClientId)) {
+            mClientId = UUID.randomUUID().toString();
+            setSyncState(FounderProvider.Contract.STATE_CLIENT_ID, mClientId);
+        }
+
+        // Keep an unfinished download's phase until we've resumed it.
+        if (!resumingDownload) {
+            setSyncState(FounderProvider.Contract.STATE_PHASE, FounderProvider.Contract.PHASE_OUTBOUND);
+        }
 
         // Note: In the production version, we won't let users delete
         //       or create founder records, only update.
-        serverMaxVersion = syncDeletedFounders(serverMaxVersion);
-        serverMaxVersion = syncNewFounders(serverMaxVersion);
-        serverMaxVersion = syncDirtyFounders(serverMaxVersion);
-        return syncServerFounderUpdates(maxVersion, serverMaxVersion);
+        serverMaxVersion = syncLocalChanges(serverMaxVersion);
+
+        // A fresh install fetches the whole directory as one snapshot file, then asks
+        // only for the changes made since the snapshot was taken.
+        if (maxVersion == 0 && !resumingDownload && importServerSnapshot()) {
+            maxVersion = stateInt(readSyncState(), FounderProvider.Contract.STATE_SERVER_VERSION);
+        }
+
+        String continuation = null;
+
+        // If the last sync died during its download, we still owe it the versions up to its
+        // target, starting from the page it was on.
+        if (serverMaxVersion == 0 && resumingDownload) {
+            serverMaxVersion = stateInt(state, FounderProvider.Contract.STATE_TARGET_VERSION);
+            continuation = state.get(FounderProvider.Contract.STATE_CONTINUATION);
+        }
+
+        ContentValues download = new ContentValues();
+
+        download.put(FounderProvider.Contract.STATE_PHASE, FounderProvider.Contract.PHASE_DOWNLOAD);
+        download.put(FounderProvider.Contract.STATE_TARGET_VERSION, serverMaxVersion);
+        download.put(FounderProvider.Contract.STATE_CONTINUATION, continuation != null ? continuation : "");
+        setSyncState(download);
+
+        boolean changesMade = syncServerFounderUpdates(maxVersion, serverMaxVersion, continuation);
+
+        // Fold this sync's writes back into the database while we're still in the background.
+        getContentResolver().call(FounderProvider.Contract.CONTENT_URI,
+                FounderProvider.Contract.METHOD_CHECKPOINT, null, null);
+
+        return changesMade;
+    }
+
+    /**
+     * Download the server's directory snapshot and have the provider import it, then
+     * fetch the photos of the founders it brought in.
+     *
+     * @return True if we imported any founders
+     */
+    private boolean importServerSnapshot() {
+        File file = new File(getCacheDir(), SNAPSHOT_FILE);
+        int count = 0;
+
+        try {
+            if (HttpHelper.download(SYNC_SERVER_URL + "snapshot.php?k=" + mSessionToken, file)) {
+                Bundle result = getContentResolver().call(FounderProvider.Contract.CONTENT_URI,
+                        FounderProvider.Contract.METHOD_IMPORT_SNAPSHOT, file.getPath(), null);
+
+                if (result != null) {
+                    count = result.getInt(FounderProvider.Contract.EXTRA_COUNT);
+                }
+            }
+        } finally {
+            file.delete();
+        }
+
+        if (count > 0) {
+            // The list can show now; the photos follow.
+            Cursor founders = getContentResolver().query(FounderProvider.Contract.SUMMARY_URI,
+                    new String[] { FounderProvider.Contract._ID }, null, null, null);
+
+            if (founders != null) {
+                try {
+                    while (founders.moveToNext()) {
+                        ContentValues values = new ContentValues();
+
+                        values.put(FounderProvider.Contract._ID, founders.getLong(0));
+                        downloadPhotos(values);
+                    }
+                } finally {
+                    founders.close();
+                }
+            }
+        }
+
+        return count > 0;
     }
 
     /**
@@ -217,7 +479,39 @@ public class SyncService extends IntentService {
     }
 
     /**
-     * Download and save locally a photo for a Founder or spouse.
+     * Apply a batch of server updates to the local database.  The provider's upsert
+     * method deletes, inserts and updates every record and sets the given sync state
+     * in one transaction, so the state we keep always matches what has committed.
+     * Finally we fetch photos for every founder we inserted or updated.
+     *
+     * @param deletes IDs of founders removed on the server
+     * @param upserts Full founder records to insert or update
+     * @param state Sync state entries to record with the batch
+     */
+    private void applyFounderBatch(List<Long> deletes, ArrayList<ContentValues> upserts, ContentValues state) {
+        Bundle extras = new Bundle();
+        long[] deleteIds = new long[deletes.size()];
+
+        for (int i = 0; i < deleteIds.length; i++) {
+            deleteIds[i] = deletes.get(i);
+        }
+
+        extras.putParcelableArrayList(FounderProvider.Contract.EXTRA_VALUES, upserts);
+        extras.putLongArray(FounderProvider.Contract.EXTRA_DELETE_IDS, deleteIds);
+        extras.putParcelable(FounderProvider.Contract.EXTRA_STATE, state);
+        getContentResolver().call(FounderProvider.Contract.CONTENT_URI,
+                FounderProvider.Contract.METHOD_UPSERT, null, extras);
+
+        for (ContentValues values : upserts) {
+            downloadPhotos(values);
+        }
+    }
+
+    /**
+     * Download and save locally a photo for a Founder or spouse.  We send the validators
+     * from the last time we fetched it, so an unchanged photo costs a 304 and nothing
+     * else; if the server ignores them, a matching content hash still saves us the write.
+     * The photo is saved as the bytes the server sent, with no decode and re-encode.
      *
      * @param id ID of the Founder record
      * @param isSpouse Boolean indicating whether we are targeting the spouse photo
@@ -225,294 +519,694 @@ public class SyncService extends IntentService {
     private void downloadPhoto(int id, boolean isSpouse) {
         try {
             PhotoManager photoManager = PhotoManager.getSharedPhotoManager(getApplicationContext());
-            String photoUrl = SYNC_SERVER_URL + "photo.php?k=" + mSessionToken + "&i=" + id;
-            Bitmap photoBitmap;
+            String variant = isSpouse ? FounderProvider.Contract.VARIANT_SPOUSE
+                    : FounderProvider.Contract.VARIANT_FOUNDER;
+            String photoUrl = SYNC_SERVER_URL + "photo.php?k=" + mSessionToken + "&i=" + id + "&f=" + variant;
+            ContentValues validators = null;
+
+            // Validators are only good while we still have the photo they describe.
+            if (photoManager.urlForFileName(variant + id) != null) {
+                validators = readPhotoValidators(id, variant);
+            }
+
+            HttpHelper.ConditionalResponse response = HttpHelper.getConditional(photoUrl,
+                    validators != null ? validators.getAsString(FounderProvider.Contract.ETAG) : null,
+                    validators != null ? validators.getAsString(FounderProvider.Contract.LAST_MODIFIED) : null);
+
+            if (response.isNotModified()) {
+                Log.d(TAG, "downloadPhoto not modified: " + id + ", isSpouse " + isSpouse);
+                return;
+            }
+
+            if (!response.isOk()) {
+                Log.d(TAG, "downloadPhoto no photo: " + id + ", isSpouse " + isSpouse);
+                return;
+            }
 
-            photoUrl += "&f=" + (isSpouse ? "spouse" : "founder");
-            photoBitmap = HttpHelper.getBitmap(photoUrl);
+            String hash = contentHash(response.body);
+
+            if (validators == null
+                    || !hash.equals(validators.getAsString(FounderProvider.Contract.CONTENT_HASH))) {
+                boolean saved;
 
-            if (photoBitmap != null) {
                 if (isSpouse) {
                     Log.d(TAG, "downloadPhoto saving spouse photo: " + id);
-                    photoManager.saveSpousePhotoForFounderId(id, photoBitmap);
+                    saved = photoManager.saveSpousePhotoBytesForFounderId(id, response.body);
                 } else {
                     Log.d(TAG, "downloadPhoto saving founder photo: " + id);
-                    photoManager.savePhotoForFounderId(id, photoBitmap);
+                    saved = photoManager.savePhotoBytesForFounderId(id, response.body);
+                }
+
+                if (!saved) {
+                    // Without the photo, validators would make us skip it next time too.
+                    Log.d(TAG, "downloadPhoto unable to save: " + id + ", isSpouse " + isSpouse);
+                    return;
                 }
             } else {
-                Log.d(TAG, "downloadPhoto null bitmap: " + id + ", isSpouse " + isSpouse);
+                Log.d(TAG, "downloadPhoto unchanged: " + id + ", isSpouse " + isSpouse);
             }
+
+            ContentValues values = new ContentValues();
+
+            values.put(FounderProvider.Contract.FOUNDER_ID, id);
+            values.put(FounderProvider.Contract.PHOTO_VARIANT, variant);
+            values.put(FounderProvider.Contract.ETAG, response.eTag);
+            values.put(FounderProvider.Contract.LAST_MODIFIED, response.lastModified);
+            values.put(FounderProvider.Contract.CONTENT_HASH, hash);
+            getContentResolver().insert(FounderProvider.Contract.PHOTO_VALIDATORS_URI, values);
         } catch (Exception e) {
             Log.d(TAG, "downloadPhoto unable to complete: " + e);
         }
     }
 
     /**
-     * Download the Founder and/or spouse photo(s) for this Founder record.
+     * Read the validators we stored when we last downloaded a photo.
+     *
+     * @param id ID of the Founder record
+     * @param variant Which of the founder's photos
+     * @return ETag, Last-Modified and content hash, or null if we have none
+     */
+    private ContentValues readPhotoValidators(int id, String variant) {
+        Cursor cursor = getContentResolver().query(FounderProvider.Contract.PHOTO_VALIDATORS_URI,
+                new String[]{FounderProvider.Contract.ETAG, FounderProvider.Contract.LAST_MODIFIED,
+                        FounderProvider.Contract.CONTENT_HASH},
+                FounderProvider.Contract.FOUNDER_ID + " = ? AND " + FounderProvider.Contract.PHOTO_VARIANT + " = ?",
+                new String[]{Integer.toString(id), variant}, null);
+        ContentValues validators = null;
+
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    validators = new ContentValues();
+                    validators.put(FounderProvider.Contract.ETAG, cursor.getString(0));
+                    validators.put(FounderProvider.Contract.LAST_MODIFIED, cursor.getString(1));
+                    validators.put(FounderProvider.Contract.CONTENT_HASH, cursor.getString(2));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return validators;
+    }
+
+    /**
+     * @param content Bytes to hash
+     * @return Hex SHA-1 digest of the bytes
+     * @throws NoSuchAlgorithmException Never, since every platform has SHA-1
+     */
+    private static String contentHash(byte[] content) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return hex.toString();
+    }
+
+    /**
+     * Queue the Founder and spouse photos for this Founder record for download, so we
+     * can go on applying records while they arrive.
      *
      * @param values A key/value store holding a Founder record ID
      */
     private void downloadPhotos(ContentValues values) {
         int id = values.getAsInteger(FounderProvider.Contract._ID);
 
-        downloadPhoto(id, PHOTO_FOUNDER);
-        downloadPhoto(id, PHOTO_SPOUSE);
+        mPhotos.enqueue(id, PHOTO_FOUNDER);
+        mPhotos.enqueue(id, PHOTO_SPOUSE);
     }
 
     /**
-     * Figure out what the highest version is that we know about.
+     * Read our persistent sync state: the highest server version we've applied, the
+     * phase the last sync reached, and so on.  This is a handful of rows, so unlike
+     * scanning the founders for their highest version it costs the same however many
+     * founders we have.
+     *
+     * @return Map of sync state entry name to value
      */
-    private int maxFounderVersion() {
-        Cursor maxVersionCursor = getContentResolver().query(FounderProvider.Contract.CONTENT_URI,
-                new String[]{"MAX(" + FounderProvider.Contract.VERSION + ") as max_version"},
+    private Map<String, String> readSyncState() {
+        Cursor stateCursor = getContentResolver().query(FounderProvider.Contract.SYNC_STATE_URI,
+                new String[]{FounderProvider.Contract.STATE_NAME, FounderProvider.Contract.STATE_VALUE},
                 null, null, null);
-        int maxVersion = 0;
+        Map<String, String> state = new HashMap<>();
 
-        if (maxVersionCursor != null) {
-            if (maxVersionCursor.moveToFirst()) {
-                maxVersion = maxVersionCursor.getInt(0);
+        if (stateCursor != null) {
+            while (stateCursor.moveToNext()) {
+                state.put(stateCursor.getString(0), stateCursor.getString(1));
             }
 
-            maxVersionCursor.close();
+            stateCursor.close();
         }
 
-        return maxVersion;
+        return state;
     }
 
-    private int syncDeletedFounders(int serverMaxVersion) {
-        Cursor deleted = getContentResolver().query(
-                FounderProvider.Contract.CONTENT_URI,
-                new String[]{FounderProvider.Contract._ID},
-                FounderProvider.Contract.DELETED + " <> 0", null,
-                FounderProvider.Contract.VERSION);
+    /**
+     * @param state Sync state as returned by readSyncState()
+     * @param name Name of an integer entry
+     * @return The entry's value, or 0 if it's missing or unreadable
+     */
+    private static int stateInt(Map<String, String> state, String name) {
+        try {
+            return Integer.parseInt(state.get(name));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
-        if (deleted != null) {
-            boolean success = deleted.moveToFirst();
+    /**
+     * Record one sync state entry.
+     *
+     * @param name Name of the entry
+     * @param value Its new value
+     */
+    private void setSyncState(String name, String value) {
+        ContentValues state = new ContentValues();
 
-            while (success) {
-                int deletedId = deleted.getInt(0);
+        state.put(name, value);
+        setSyncState(state);
+    }
 
-                try {
-                    String url = SYNC_SERVER_URL + "deletefounder.php" + "?k=" + mSessionToken + "&i=" + deletedId;
+    /**
+     * Record several sync state entries together.
+     *
+     * @param state Entries to set, keyed by name
+     */
+    private void setSyncState(ContentValues state) {
+        Bundle extras = new Bundle();
 
-                    String result = HttpHelper.getContent(url).trim();
-                    serverMaxVersion = Integer.parseInt(result);
+        extras.putParcelable(FounderProvider.Contract.EXTRA_STATE, state);
+        getContentResolver().call(FounderProvider.Contract.CONTENT_URI,
+                FounderProvider.Contract.METHOD_SET_SYNC_STATE, null, extras);
+    }
 
-                    if (!result.equals("0")) {
-                        // Sync to delete on server worked, so remove from local database
-                        getContentResolver().delete(FounderProvider.Contract.CONTENT_URI,
-                                FounderProvider.Contract._ID + " = ?", new String[]{deletedId + ""});
+    /**
+     * Send local edits to the server.  Triggers on the founder table append every new,
+     * edited or deleted founder to the change log, so rather than scanning the directory
+     * on its flag columns we drain the log, oldest edit first.  Several entries for one
+     * founder collapse into a single change, and entries are only removed once the
+     * server has accepted that founder, so anything that fails is retried next sync.
+     * Changes go to the server in batches, one request each, closing a batch once it
+     * reaches MUTATION_BATCH_SIZE founders or MUTATION_BATCH_LENGTH characters.
+     *
+     * @param serverMaxVersion Highest server version seen so far this sync
+     * @return Highest server version seen after the uploads
+     */
+    private int syncLocalChanges(int serverMaxVersion) {
+        Map<Long, PendingChange> pending = readChangeLog();
+        List<PendingChange> batch = new ArrayList<>();
+        MutationBatch mutations = null;
+
+        for (PendingChange change : pending.values()) {
+            try {
+                if (change.isDeleted && change.isNew) {
+                    // It never reached the server, so there's nothing to send.
+                    finishChange(change, deleteLocalFounder(change));
+                    continue;
+                }
+
+                if (!change.isDeleted) {
+                    change.founder = readFounder(change.founderId);
+
+                    if (change.founder == null) {
+                        // Gone since it was logged, so there's nothing left to send.
+                        finishChange(change, true);
+                        continue;
                     }
-                } catch (Exception e) {
-                    Log.d(TAG, "syncDeletedFounders: unable to delete " + deletedId);
                 }
 
-                success = deleted.moveToNext();
+                if (mMutationBatchUnsupported) {
+                    finishChange(change, pushFounder(change));
+                    continue;
+                }
+
+                if (mutations == null) {
+                    mutations = new MutationBatch();
+                }
+
+                addMutation(mutations, change);
+                batch.add(change);
+
+                if (mutations.size() >= MUTATION_BATCH_SIZE || mutations.length() >= MUTATION_BATCH_LENGTH) {
+                    pushMutations(mutations, batch);
+                    mutations = null;
+                }
+            } catch (Exception e) {
+                Log.d(TAG, "syncLocalChanges: unable to sync founder " + change.founderId + ": " + e);
             }
+        }
 
-            deleted.close();
+        if (mutations != null) {
+            pushMutations(mutations, batch);
+        }
+
+        for (PendingChange change : pending.values()) {
+            serverMaxVersion = Math.max(serverMaxVersion, change.serverVersion);
         }
 
         return serverMaxVersion;
     }
 
-    private int syncDirtyFounders(int serverMaxVersion) {
-        String[] founderFields = FounderProvider.Contract.allFieldsIdVersion();
+    /**
+     * Read a founder's current record, to send to the server.
+     *
+     * @param id ID of the Founder record
+     * @return The founder's fields, or null if there's no such founder
+     */
+    private ContentValues readFounder(long id) {
+        Cursor founder = getContentResolver().query(
+                ContentUris.withAppendedId(FounderProvider.Contract.CONTENT_URI, id),
+                FounderProvider.Contract.allFieldsIdVersion(), null, null, null);
 
-        // Get dirty founders that are not deleted or new
-        Cursor dirtyFounders = getContentResolver().query(
-                FounderProvider.Contract.CONTENT_URI,
-                founderFields,
-                FounderProvider.Contract.DIRTY + " <> 0 and (" + FounderProvider.Contract.DELETED +
-                        " is null or " + FounderProvider.Contract.DELETED + " <> 0) and (" +
-                        FounderProvider.Contract.NEW + " is null or " + FounderProvider.Contract.NEW + " = 0)",
-                null,
-                FounderProvider.Contract.VERSION);
+        if (founder == null) {
+            throw new IllegalStateException("Unable to query founder " + id);
+        }
 
-        if (dirtyFounders != null) {
-            boolean success = dirtyFounders.moveToFirst();
+        try {
+            if (!founder.moveToFirst()) {
+                return null;
+            }
 
-            while (success) {
-                try {
-                    int dirtyId = dirtyFounders.getInt(dirtyFounders.getColumnIndexOrThrow(FounderProvider.Contract._ID));
-                    String url = SYNC_SERVER_URL + "updatefounder.php";
-                    Map<String, String> fieldKeyMap = allFieldsMap();
-                    HashMap<String, String> parameters = new HashMap<>();
-
-                    for (String field : fieldKeyMap.keySet()) {
-                        parameters.put(field,
-                                dirtyFounders.getString(dirtyFounders.getColumnIndexOrThrow(fieldKeyMap.get(field))));
-                    }
+            ContentValues values = new ContentValues();
 
-                    parameters.put("k", mSessionToken);
-                    parameters.put("i", dirtyId + "");
-                    parameters.put("v", dirtyFounders.getInt(dirtyFounders.getColumnIndexOrThrow(FounderProvider.Contract.VERSION)) + "");
+            DatabaseUtils.cursorRowToContentValues(founder, values);
 
-                    String result = HttpHelper.postContent(url, parameters).trim();
+            return values;
+        } finally {
+            founder.close();
+        }
+    }
+
+    /**
+     * Remove a founder's entries from the change log once the server has them.
+     *
+     * @param change The founder's outbound work
+     * @param done True if the work is finished; otherwise we keep it for next time
+     */
+    private void finishChange(PendingChange change, boolean done) {
+        if (done) {
+            getContentResolver().delete(FounderProvider.Contract.CHANGES_URI,
+                    FounderProvider.Contract.SEQ + " IN (" + TextUtils.join(", ", change.seqs) + ")", null);
+        }
+    }
 
-                    if (!result.equals("0")) {
-                        boolean upResult = uploadPhoto(dirtyId, dirtyFounders, PHOTO_FOUNDER) ||
-                                           uploadPhoto(dirtyId, dirtyFounders, PHOTO_SPOUSE);
+    /**
+     * Add one founder's outbound work to a batch.
+     *
+     * @param mutations The batch
+     * @param change The founder's outbound work, with its record read
+     * @throws IOException Never, since the batch is in memory
+     */
+    private void addMutation(MutationBatch mutations, PendingChange change) throws IOException {
+        if (change.isDeleted) {
+            mutations.add(change.founderId, MutationBatch.OP_DELETE, 0, null, null);
+        } else {
+            String version = change.founder.getAsString(FounderProvider.Contract.VERSION);
 
-                        // Sync to server worked, so replace in local database with updated values
-                        JSONObject serverUpdate = new JSONObject(result);
-                        ContentValues values = new ContentValues();
+            mutations.add(change.founderId, change.isNew ? MutationBatch.OP_NEW : MutationBatch.OP_UPDATE,
+                    TextUtils.isEmpty(version) ? 0 : Integer.parseInt(version),
+                    change.isNew ? requestKey(change) : null, founderParameters(change.founder, change.isNew));
+        }
+    }
 
-                        values.put(FounderProvider.Contract.NEW, FounderProvider.Contract.FLAG_EXISTING);
+    /**
+     * @param change Outbound work for a new founder
+     * @return The key the server knows this founder's add by, the same on every retry
+     *         until the add is finished, since the founder's first log entry is its add
+     */
+    private String requestKey(PendingChange change) {
+        return mClientId + "-" + change.seqs.get(0);
+    }
 
-                        // If we had trouble uploading an image, this record is still dirty.
-                        values.put(FounderProvider.Contract.DIRTY,
-                                (upResult == UPLOAD_SUCCESS) ? FounderProvider.Contract.FLAG_CLEAN :
-                                        FounderProvider.Contract.FLAG_DIRTY);
+    /**
+     * Send a batch of changes to the server in one request, then apply the server's
+     * result for each founder.  If the server says it has no batch endpoint, we send
+     * this batch's changes, and the rest of this service's, one founder at a time
+     * instead.  If we can't tell whether the server applied the batch, we leave it all
+     * in the change log for the next sync.
+     *
+     * @param mutations The batch
+     * @param batch Outbound work for each founder in the batch, in order; cleared
+     */
+    private void pushMutations(MutationBatch mutations, List<PendingChange> batch) {
+        Map<Long, MutationBatch.Result> results;
 
-                        for (String field : founderFields) {
-                            if ( !field.equalsIgnoreCase(FounderProvider.Contract._ID) &&
-                                 !field.equalsIgnoreCase(FounderProvider.Contract.DELETED) ) {
-                                values.put(field, serverUpdate.getString(field));
-                            }
-                        }
+        try {
+            Map<String, String> parameters = new HashMap<>();
+
+            parameters.put("k", mSessionToken);
+            parameters.put("m", mutations.finish());
 
-                        serverMaxVersion = Integer.parseInt(serverUpdate.getString(FounderProvider.Contract.VERSION));
+            HttpHelper.PostResponse response = HttpHelper.post(SYNC_SERVER_URL + "mutatefounders.php", parameters);
 
-                        getContentResolver().update(FounderProvider.Contract.CONTENT_URI, values,
-                                FounderProvider.Contract._ID + " = ?", new String[]{dirtyId + ""});
+            results = MutationBatch.readResponse(response.statusCode, response.body);
+        } catch (IOException e) {
+            Log.d(TAG, "pushMutations: leaving batch for next sync: " + e);
+            batch.clear();
+            return;
+        }
+
+        if (results == null) {
+            Log.d(TAG, "pushMutations: no batch endpoint, falling back to single founders");
+            mMutationBatchUnsupported = true;
+        }
+
+        for (PendingChange change : batch) {
+            boolean done = false;
+
+            try {
+                if (results == null) {
+                    done = pushFounder(change);
+                } else {
+                    MutationBatch.Result result = results.get(change.founderId);
+
+                    if (result != null && result.ok) {
+                        done = applyMutationResult(change, result);
                     }
-                } catch (Exception e) {
-                    Log.d(TAG, "syncDirtyFounders: unable to update dirty founder: " + e);
                 }
-
-                success = dirtyFounders.moveToNext();
+            } catch (Exception e) {
+                Log.d(TAG, "pushMutations: unable to sync founder " + change.founderId + ": " + e);
             }
 
-            dirtyFounders.close();
+            finishChange(change, done);
         }
 
-        return serverMaxVersion;
+        batch.clear();
     }
 
-    private int syncNewFounders(int serverMaxVersion) {
-        String[] founderFields = FounderProvider.Contract.allFieldsIdVersion();
-        Cursor newFounders = getContentResolver().query(
-                FounderProvider.Contract.CONTENT_URI,
-                founderFields,
-                FounderProvider.Contract.NEW + " = " + FounderProvider.Contract.FLAG_NEW, null,
-                FounderProvider.Contract.VERSION);
+    /**
+     * Apply the server's result for one founder from a batch.
+     *
+     * @param change The founder's outbound work
+     * @param result What the server did with it
+     * @return True if the work is finished
+     */
+    private boolean applyMutationResult(PendingChange change, MutationBatch.Result result) {
+        change.serverVersion = result.version;
 
-        if (newFounders != null) {
-            boolean success = newFounders.moveToFirst();
+        if (change.isDeleted) {
+            deleteLocalFounder(change);
+            return true;
+        }
 
-            while (success) {
-                try {
-                    int newId = newFounders.getInt(newFounders.getColumnIndexOrThrow(FounderProvider.Contract._ID));
-                    String url = SYNC_SERVER_URL + "addfounder.php";
-                    Map<String, String> fieldKeyMap = allFieldsMap();
-                    HashMap<String, String> parameters = new HashMap<>();
+        if (change.isNew) {
+            return completeNewFounder(change, result.serverId, result.version + "");
+        }
 
-                    for (String field : fieldKeyMap.keySet()) {
-                        String value = newFounders.getString(newFounders.getColumnIndexOrThrow(fieldKeyMap.get(field)));
+        ContentValues serverUpdate = result.founder != null ? result.founder : new ContentValues();
 
-                        if (value == null || value.equalsIgnoreCase("null")) {
-                            value = "";
-                        }
+        if (!serverUpdate.containsKey(FounderProvider.Contract.VERSION)) {
+            serverUpdate.put(FounderProvider.Contract.VERSION, result.version + "");
+        }
 
-                        parameters.put(field, value);
-                    }
+        return completeDirtyFounder(change, serverUpdate);
+    }
 
-                    parameters.put("k", mSessionToken);
+    /**
+     * Send one founder's outbound work to the server on its own, through the endpoint
+     * for its kind of change.
+     *
+     * @param change The founder's outbound work, with its record read
+     * @return True if the work is finished
+     * @throws Exception If the request or its response fails
+     */
+    private boolean pushFounder(PendingChange change) throws Exception {
+        if (change.isDeleted) {
+            return pushDeletedFounder(change);
+        } else if (change.isNew) {
+            return pushNewFounder(change);
+        } else {
+            return pushDirtyFounder(change);
+        }
+    }
 
-                    String result = HttpHelper.postContent(url, parameters).trim();
-                    JSONObject serverNew = new JSONObject(result);
+    /**
+     * Map a founder's fields to the short keys our server uses.
+     *
+     * @param founder The founder's record
+     * @param blankNulls True to send missing values as empty strings
+     * @return Field values keyed by short key
+     */
+    private Map<String, String> founderParameters(ContentValues founder, boolean blankNulls) {
+        Map<String, String> fieldKeyMap = allFieldsMap();
+        HashMap<String, String> parameters = new HashMap<>();
 
-                    if (!result.equals("0")) {
-                        // Sync to add on server worked, so replace in local database
-                        ContentValues values = new ContentValues();
+        for (String field : fieldKeyMap.keySet()) {
+            String value = founder.getAsString(fieldKeyMap.get(field));
 
-                        // TODO: There could be an issue here.  Make sure this ID doesn't already exist.
-                        values.put(FounderProvider.Contract._ID, serverNew.getString(FounderProvider.Contract.SERVER_ID));
-                        values.put(FounderProvider.Contract.NEW, FounderProvider.Contract.FLAG_EXISTING);
-                        values.put(FounderProvider.Contract.DIRTY, FounderProvider.Contract.FLAG_CLEAN);
-                        values.put(FounderProvider.Contract.VERSION, serverNew.getString(FounderProvider.Contract.VERSION));
-                        serverMaxVersion = Integer.parseInt(serverNew.getString(FounderProvider.Contract.VERSION));
-
-                        getContentResolver().update(
-                                FounderProvider.Contract.CONTENT_URI,
-                                values,
-                                FounderProvider.Contract._ID + " = ?",
-                                new String[]{newId + ""});
-
-                        uploadPhoto(newId, newFounders, PHOTO_FOUNDER);
-                        uploadPhoto(newId, newFounders, PHOTO_SPOUSE);
-                    }
-                } catch (Exception e) {
-                    Log.d(TAG, "syncNewFounders: unable to update founder: " + e);
-                    // Ignore
+            if (blankNulls && (value == null || value.equalsIgnoreCase("null"))) {
+                value = "";
+            }
+
+            parameters.put(field, value);
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Read the local change log and group it by founder, in the order each founder was
+     * first edited.
+     *
+     * @return Map of founder ID to that founder's outbound work
+     */
+    private Map<Long, PendingChange> readChangeLog() {
+        Map<Long, PendingChange> pending = new LinkedHashMap<>();
+        Cursor log = getContentResolver().query(FounderProvider.Contract.CHANGES_URI,
+                new String[]{FounderProvider.Contract.SEQ, FounderProvider.Contract.FOUNDER_ID,
+                        FounderProvider.Contract.OPERATION},
+                null, null, FounderProvider.Contract.SEQ);
+
+        if (log != null) {
+            while (log.moveToNext()) {
+                long founderId = log.getLong(1);
+                String operation = log.getString(2);
+                PendingChange change = pending.get(founderId);
+
+                if (change == null) {
+                    change = new PendingChange(founderId);
+                    pending.put(founderId, change);
                 }
 
-                success = newFounders.moveToNext();
+                change.seqs.add(log.getLong(0));
+                change.isNew |= FounderProvider.Contract.OP_NEW.equals(operation);
+                change.isDeleted |= FounderProvider.Contract.OP_DELETED.equals(operation);
             }
 
-            newFounders.close();
+            log.close();
         }
 
-        return serverMaxVersion;
+        return pending;
     }
 
-    private boolean syncServerFounderUpdates(int maxVersion, int serverMaxVersion) {
-        boolean changesMade = false;
+    /**
+     * Remove a founder that was deleted before it ever reached the server.
+     *
+     * @param change The founder's outbound work
+     * @return True, since there's nothing to tell the server
+     */
+    private boolean deleteLocalFounder(PendingChange change) {
+        getContentResolver().delete(FounderProvider.Contract.CONTENT_URI,
+                FounderProvider.Contract._ID + " = ?", new String[]{change.founderId + ""});
 
-        try {
-            // Ask the server for updates between our max at the beginning of the sync and
-            // the new max on the server
-            String query = SYNC_SERVER_URL + "getupdatessince.php?k=" + mSessionToken + "&v=" +
-                    maxVersion + "&x=" + serverMaxVersion;
-            Log.d(TAG, "syncServerFounderUpdates: url " + query);
-            String result = HttpHelper.getContent(query);
-            Log.d(TAG, "syncServerFounderUpdates: result " + result);
-            JSONArray founders = new JSONArray(result);
-            int len = founders.length();
-
-            for (int i = 0; i < len; i++) {
-                JSONObject founder = (JSONObject) founders.get(i);
-                changesMade = true;
-
-                if (founder.getString(FounderProvider.Contract.DELETED).equalsIgnoreCase(FounderProvider.Contract.FLAG_DELETED)) {
-                    // We need to delete this founder
-                    getContentResolver().delete(FounderProvider.Contract.CONTENT_URI,
-                            FounderProvider.Contract._ID + " = ?",
-                            new String[] { founder.getString(FounderProvider.Contract.SERVER_ID) });
-                } else {
-                    // We need to insert or update this founder
-                    ContentValues values = new ContentValues();
+        return true;
+    }
 
-                    for (String field : FounderProvider.Contract.allFieldsIdVersion()) {
-                        if (!field.equalsIgnoreCase(FounderProvider.Contract._ID)) {
-                            values.put(field, founder.getString(field));
-                        }
-                    }
+    private boolean pushDeletedFounder(PendingChange change) throws Exception {
+        long deletedId = change.founderId;
+        String url = SYNC_SERVER_URL + "deletefounder.php" + "?k=" + mSessionToken + "&i=" + deletedId;
 
-                    values.put(FounderProvider.Contract._ID, founder.getString(FounderProvider.Contract.SERVER_ID));
+        String result = HttpHelper.getContent(url).trim();
+        change.serverVersion = Integer.parseInt(result);
 
-                    // Attempt to update
-                    int count = getContentResolver().update(FounderProvider.Contract.CONTENT_URI, values,
-                            FounderProvider.Contract._ID + " = ?",
-                            new String[] { founder.getString(FounderProvider.Contract.SERVER_ID) });
+        if (!result.equals("0")) {
+            // Sync to delete on server worked, so remove from local database
+            deleteLocalFounder(change);
+            return true;
+        }
 
-                    if (count <= 0) {
-                        // If update failed, attempt to insert
-                        getContentResolver().insert(FounderProvider.Contract.CONTENT_URI, values);
-                    }
+        return false;
+    }
+
+    private boolean pushDirtyFounder(PendingChange change) throws Exception {
+        String[] founderFields = FounderProvider.Contract.allFieldsIdVersion();
+        String url = SYNC_SERVER_URL + "updatefounder.php";
+        Map<String, String> parameters = founderParameters(change.founder, false);
 
-                    downloadPhotos(values);
+        parameters.put("k", mSessionToken);
+        parameters.put("i", change.founderId + "");
+        parameters.put("v", change.founder.getAsString(FounderProvider.Contract.VERSION));
+
+        String result = HttpHelper.postContent(url, parameters).trim();
+
+        if (!result.equals("0")) {
+            JSONObject serverUpdate = new JSONObject(result);
+            ContentValues serverValues = new ContentValues();
+
+            for (String field : founderFields) {
+                if (!field.equalsIgnoreCase(FounderProvider.Contract._ID)) {
+                    serverValues.put(field, serverUpdate.getString(field));
                 }
             }
-        } catch (Exception e) {
-            Log.d(TAG, "syncServerFounderUpdates: " + e);
+
+            return completeDirtyFounder(change, serverValues);
         }
 
-        return changesMade;
+        return false;
+    }
+
+    /**
+     * Bring an edited founder in line with the server once the server has accepted the
+     * edit, and upload its photos.
+     *
+     * @param change The founder's outbound work, with its record read
+     * @param serverUpdate The server's copy of the founder
+     * @return True if the work is finished, false if a photo still needs uploading
+     */
+    private boolean completeDirtyFounder(PendingChange change, ContentValues serverUpdate) {
+        String[] founderFields = FounderProvider.Contract.allFieldsIdVersion();
+        int dirtyId = (int) change.founderId;
+        boolean upResult = uploadPhoto(dirtyId, change.founder, PHOTO_FOUNDER) ||
+                           uploadPhoto(dirtyId, change.founder, PHOTO_SPOUSE);
+
+        // Sync to server worked, so replace in local database with updated values
+        ContentValues values = new ContentValues();
+
+        values.put(FounderProvider.Contract.NEW, FounderProvider.Contract.FLAG_EXISTING);
+
+        // If we had trouble uploading an image, this record is still dirty.
+        values.put(FounderProvider.Contract.DIRTY,
+                (upResult == UPLOAD_SUCCESS) ? FounderProvider.Contract.FLAG_CLEAN :
+                        FounderProvider.Contract.FLAG_DIRTY);
+
+        for (String field : founderFields) {
+            if ( !field.equalsIgnoreCase(FounderProvider.Contract._ID) &&
+                 !field.equalsIgnoreCase(FounderProvider.Contract.DELETED) &&
+                 serverUpdate.containsKey(field) ) {
+                values.put(field, serverUpdate.getAsString(field));
+            }
+        }
+
+        change.serverVersion = Integer.parseInt(serverUpdate.getAsString(FounderProvider.Contract.VERSION));
+
+        getContentResolver().update(FounderProvider.Contract.CONTENT_URI, values,
+                FounderProvider.Contract._ID + " = ?", new String[]{dirtyId + ""});
+
+        // Keep the log entries for a failed photo so we try again next time.
+        return upResult == UPLOAD_SUCCESS;
     }
 
-    private boolean uploadPhoto(int id, Cursor founderRecord, boolean isSpouse) {
+    private boolean pushNewFounder(PendingChange change) throws Exception {
+        String url = SYNC_SERVER_URL + "addfounder.php";
+        Map<String, String> parameters = founderParameters(change.founder, true);
+
+        parameters.put("k", mSessionToken);
+        parameters.put("c", requestKey(change));
+
+        String result = HttpHelper.postContent(url, parameters).trim();
+        JSONObject serverNew = new JSONObject(result);
+
+        if (!result.equals("0")) {
+            return completeNewFounder(change, serverNew.getString(FounderProvider.Contract.SERVER_ID),
+                    serverNew.getString(FounderProvider.Contract.VERSION));
+        }
+
+        return false;
+    }
+
+    /**
+     * Renumber a new founder to the ID the server gave it once the server has added it,
+     * and upload its photos.
+     *
+     * @param change The founder's outbound work, with its record read
+     * @param serverId The server's ID for the founder, or null if it didn't say
+     * @param version The founder's version on the server
+     * @return True, since the founder now exists on the server
+     */
+    private boolean completeNewFounder(PendingChange change, String serverId, String version) {
+        int newId = (int) change.founderId;
+
+        // Sync to add on server worked, so replace in local database
+        ContentValues values = new ContentValues();
+
+        // TODO: There could be an issue here.  Make sure this ID doesn't already exist.
+        if (serverId != null) {
+            values.put(FounderProvider.Contract._ID, serverId);
+        }
+
+        values.put(FounderProvider.Contract.NEW, FounderProvider.Contract.FLAG_EXISTING);
+        values.put(FounderProvider.Contract.DIRTY, FounderProvider.Contract.FLAG_CLEAN);
+        values.put(FounderProvider.Contract.VERSION, version);
+        change.serverVersion = Integer.parseInt(version);
+
+        getContentResolver().update(
+                FounderProvider.Contract.CONTENT_URI,
+                values,
+                FounderProvider.Contract._ID + " = ?",
+                new String[]{newId + ""});
+
+        uploadPhoto(newId, change.founder, PHOTO_FOUNDER);
+        uploadPhoto(newId, change.founder, PHOTO_SPOUSE);
+        return true;
+    }
+
+    /**
+     * Download and apply the server's changes between our version and its current one,
+     * a page at a time.  Each page's last batch commits the token for the page after it
+     * along with the founders, so a sync that's interrupted resumes from the page it was
+     * on rather than from the beginning.
+     *
+     * @param maxVersion Highest server version we've already applied
+     * @param serverMaxVersion Server version to bring ourselves up to
+     * @param continuation Token for the page to resume from, or null to start afresh
+     * @return True if the server sent any changes
+     */
+    private boolean syncServerFounderUpdates(int maxVersion, final int serverMaxVersion, String continuation) {
+        DeltaSync.PageSource source = new DeltaSync.PageSource() {
+            @Override
+            public boolean fetch(int appliedVersion, String continuation, HttpHelper.StreamHandler handler) {
+                // Ask the server for a page of updates between what we've applied and the
+                // max on the server at the beginning of the sync
+                String query = SYNC_SERVER_URL + "getupdatessince.php?k=" + mSessionToken + "&v=" +
+                        appliedVersion + "&x=" + serverMaxVersion + "&p=" + DELTA_PROTOCOL_VERSION +
+                        "&n=" + DELTA_PAGE_SIZE;
+
+                if (!TextUtils.isEmpty(continuation)) {
+                    query += "&c=" + Uri.encode(continuation);
+                }
+
+                Log.d(TAG, "syncServerFounderUpdates: url " + query);
+
+                // Hold the provider's change notifications so the list reloads once per page,
+                // not once per batch.  Only our own writes are held, so edits the user makes
+                // meanwhile still show at once.
+                getContentResolver().call(FounderProvider.Contract.CONTENT_URI,
+                        FounderProvider.Contract.METHOD_SUSPEND_NOTIFICATIONS, null, null);
+
+                try {
+                    return HttpHelper.getStream(query, handler);
+                } finally {
+                    getContentResolver().call(FounderProvider.Contract.CONTENT_URI,
+                            FounderProvider.Contract.METHOD_RESUME_NOTIFICATIONS, null, null);
+                }
+            }
+        };
+        DeltaSync.BatchSink sink = new DeltaSync.BatchSink() {
+            @Override
+            public void apply(List<Long> deletes, ArrayList<ContentValues> upserts, ContentValues state) {
+                applyFounderBatch(deletes, upserts, state);
+            }
+        };
+
+        return new DeltaSync(source, sink, SYNC_BATCH_SIZE, mLastSyncTime).run(maxVersion, serverMaxVersion,
+                continuation);
+    }
+
+    private boolean uploadPhoto(int id, ContentValues founderRecord, boolean isSpouse) {
         PhotoManager photoManager = PhotoManager.getSharedPhotoManager(getApplicationContext());
         Bitmap photo;
 
@@ -528,9 +1222,9 @@ public class SyncService extends IntentService {
             photoParameters.put("k", mSessionToken);
             photoParameters.put("i", id + "");
             photoParameters.put("f", isSpouse ? "spouse" : "founder");
-            photoParameters.put("u", founderRecord.getString(founderRecord.getColumnIndexOrThrow(
+            photoParameters.put("u", founderRecord.getAsString(
                     isSpouse ? FounderProvider.Contract.SPOUSE_IMAGE_URL :
-                            FounderProvider.Contract.IMAGE_URL)));
+                            FounderProvider.Contract.IMAGE_URL));
 
             String result = HttpHelper.postMultipartContent(SYNC_SERVER_URL + "uploadphoto.php", photoParameters, photo);
 
@@ -553,4 +1247,24 @@ public class SyncService extends IntentService {
         // There was no photo to upload, so it wasn't a failure.
         return UPLOAD_SUCCESS;
     }
-}
\ No newline at end of file
+
+    /**
+     * Outbound work for one founder, gathered from its entries in the local change log.
+     */
+    private static class PendingChange {
+        final long founderId;
+        final List<Long> seqs = new ArrayList<>();
+        boolean isNew = false;
+        boolean isDeleted = false;
+        int serverVersion = 0;
+
+        /**
+         * The founder's record as we send it, read just before sending.
+         */
+        ContentValues founder = null;
+
+        PendingChange(long founderId) {
+            this.founderId = founderId;
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -34,6 +36,61 @@ import javax.net.ssl.X509TrustManager;
  */
 public class HttpHelper {
 
+    /**
+     * The outcome of a conditional GET: the status, and for a full response its body
+     * and the validators the server sent with it.
+     */
+    public static class ConditionalResponse {
+        /**
+         * HTTP status code, or -1 if the request failed outright.
+         */
+        public int statusCode = -1;
+
+        /**
+         * Response body, when the status is OK.
+         */
+        public byte[] body;
+
+        /**
+         * ETag header, if the server sent one.
+         */
+        public String eTag;
+
+        /**
+         * Last-Modified header, if the server sent one.
+         */
+        public String lastModified;
+
+        /**
+         * @return True if the server said our copy is still current
+         */
+        public boolean isNotModified() {
+            return statusCode == HttpsURLConnection.HTTP_NOT_MODIFIED;
+        }
+
+        /**
+         * @return True if the server sent a new body
+         */
+        public boolean isOk() {
+            return statusCode == HttpsURLConnection.HTTP_OK && body != null;
+        }
+    }
+
+    /**
+     * The outcome of a POST: the status, and the body when the server sent one.
+     */
+    public static class PostResponse {
+        /**
+         * HTTP status code, or -1 if the request failed outright.
+         */
+        public int statusCode = -1;
+
+        /**
+         * Response body, when the status isn't an error.
+         */
+        public String body;
+    }
+
     private static final String BOUNDARY = "*****";
 
     /**
@@ -113,6 +170,170 @@ public class HttpHelper {
         return bitmap;
     }
 
+    /**
+     * Consumes a response body as it arrives.
+     */
+    public interface StreamHandler {
+        /**
+         * Read the body.  Called on the caller's thread while the connection is open.
+         *
+         * @param inputStream The response body
+         * @throws IOException If reading fails
+         */
+        void handle(InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * Use the GET method to process a given URL, handing the response body to a
+     * handler as a stream rather than reading it all into memory first.
+     *
+     * @param urlString A string representation of a URL to GET
+     * @param handler What reads the body
+     * @return True if the server answered OK and the handler read the body without error
+     */
+    public static boolean getStream(String urlString, StreamHandler handler) {
+        HttpsURLConnection urlConnection = null;
+        boolean handled = false;
+
+        try {
+            URL url = new URL(urlString);
+            urlConnection = getSecureConnection(url);
+
+            if (urlConnection.getResponseCode() != HttpsURLConnection.HTTP_OK) {
+                return false;
+            }
+
+            InputStream inputStream = urlConnection.getInputStream();
+
+            try {
+                handler.handle(inputStream);
+                handled = true;
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException | NoSuchAlgorithmException | KeyManagementException e) {
+            Log.d(TAG, "getStream: " + e);
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+
+        return handled;
+    }
+
+    /**
+     * Use the GET method to fetch a given URL only if it has changed since we last
+     * fetched it, according to the validators the server gave us then.  The body is
+     * returned as raw bytes, so the caller can save it without decoding it.
+     *
+     * @param urlString A string representation of a URL to GET
+     * @param eTag ETag from the last response, or null
+     * @param lastModified Last-Modified from the last response, or null
+     * @return The response; never null
+     */
+    public static ConditionalResponse getConditional(String urlString, String eTag, String lastModified) {
+        HttpsURLConnection urlConnection = null;
+        ConditionalResponse response = new ConditionalResponse();
+
+        try {
+            URL url = new URL(urlString);
+            urlConnection = getSecureConnection(url);
+
+            if (eTag != null) {
+                urlConnection.setRequestProperty("If-None-Match", eTag);
+            }
+
+            if (lastModified != null) {
+                urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+
+            response.statusCode = urlConnection.getResponseCode();
+
+            if (response.statusCode != HttpsURLConnection.HTTP_OK) {
+                return response;
+            }
+
+            response.eTag = urlConnection.getHeaderField("ETag");
+            response.lastModified = urlConnection.getHeaderField("Last-Modified");
+
+            InputStream inputStream = urlConnection.getInputStream();
+            int length = urlConnection.getContentLength();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(length > 0 ? length : 8192);
+            byte[] buffer = new byte[8192];
+            int count;
+
+            while ((count = inputStream.read(buffer)) > 0) {
+                bos.write(buffer, 0, count);
+            }
+
+            inputStream.close();
+            response.body = bos.toByteArray();
+        } catch (IOException | NoSuchAlgorithmException | KeyManagementException e) {
+            response.statusCode = -1;
+            response.body = null;
+            Log.d(TAG, "getConditional: " + e);
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Use the GET method to stream the body of a given URL into a file, without
+     * holding it in memory.
+     *
+     * @param urlString A string representation of a URL to GET
+     * @param file The file to write, which we replace
+     * @return True if the server answered OK and we saved the whole body
+     */
+    public static boolean download(String urlString, File file) {
+        HttpsURLConnection urlConnection = null;
+        OutputStream outputStream = null;
+        boolean saved = false;
+
+        try {
+            URL url = new URL(urlString);
+            urlConnection = getSecureConnection(url);
+
+            if (urlConnection.getResponseCode() != HttpsURLConnection.HTTP_OK) {
+                return false;
+            }
+
+            InputStream inputStream = urlConnection.getInputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+
+            outputStream = new FileOutputStream(file);
+
+            while ((count = inputStream.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, count);
+            }
+
+            inputStream.close();
+            saved = true;
+        } catch (IOException | NoSuchAlgorithmException | KeyManagementException e) {
+            Log.d(TAG, "download: " + e);
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    saved = false;
+                }
+            }
+
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+
+        return saved;
+    }
+
     /**
      * Use the GET method to process a given URL and return the server's response.
      *
@@ -215,9 +436,24 @@ public class HttpHelper {
      * @return The server response string for the given URL and POST parameters
      */
     public static String postContent(String urlString, Map<String, String> parameters) {
+        PostResponse response = post(urlString, parameters);
+
+        return (response.body != null) ? response.body : "";
+    }
+
+    /**
+     * Use the POST method to process a given URL, keeping the status along with the
+     * body, so the caller can tell a server that refused the request from one we
+     * never heard back from.
+     *
+     * @param urlString A string representation of a URL to POST
+     * @param parameters A map of parameters to include in the POST body
+     * @return The response; never null
+     */
+    public static PostResponse post(String urlString, Map<String, String> parameters) {
         // See http://bit.ly/1nROt5A for ideas on this pattern
         HttpsURLConnection urlConnection = null;
-        StringBuilder sb = null;
+        PostResponse response = new PostResponse();
 
         try {
             URL url = new URL(urlString);
@@ -235,28 +471,34 @@ public class HttpHelper {
             outputStream.close();
 
             urlConnection.connect();
+            response.statusCode = urlConnection.getResponseCode();
+
+            if (response.statusCode >= HttpsURLConnection.HTTP_BAD_REQUEST) {
+                return response;
+            }
 
             BufferedReader br = new BufferedReader(new InputStreamReader(urlConnection.getInputStream()));
+            StringBuilder sb = new StringBuilder();
             String line;
 
-            sb = new StringBuilder();
-
             while ((line = br.readLine()) != null) {
                 sb.append(line);
                 sb.append("\n");
             }
 
             br.close();
+            response.body = sb.toString();
         } catch (IOException | NoSuchAlgorithmException | KeyManagementException e) {
-            Log.d(TAG, "postContent: " + e);
-            sb = null;
+            response.statusCode = -1;
+            response.body = null;
+            Log.d(TAG, "post: " + e);
         } finally {
             if (urlConnection != null) {
                 urlConnection.disconnect();
             }
         }
 
-        return (sb != null) ? sb.toString() : "";
+        return response;
     }
 
     private static void addFormField(DataOutputStream dos, String fieldName, String value) throws IOException {
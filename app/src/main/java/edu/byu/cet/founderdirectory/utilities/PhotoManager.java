@@ -49,7 +49,7 @@ public class PhotoManager {
      * @param context Context for performing file operations
      * @return PhotoManager singleton
      */
-    public static @NonNull PhotoManager getSharedPhotoManager(Context context) {
+    public static synchronized @NonNull PhotoManager getSharedPhotoManager(Context context) {
         if (sSharedInstance == null) {
             sSharedInstance = new PhotoManager(context);
         }
@@ -117,6 +117,29 @@ public class PhotoManager {
         savePhoto("spouse" + id, photo);
     }
 
+    /**
+     * Save a photo for a given Founder record ID exactly as the server sent it, in
+     * whatever image format that is, without decoding and re-encoding it.
+     *
+     * @param id A Founder record ID
+     * @param photo The encoded image to save as the Founder photo
+     * @return True if the photo was saved; false if it isn't an image or couldn't be written
+     */
+    public boolean savePhotoBytesForFounderId(int id, byte[] photo) {
+        return savePhotoBytes("founder" + id, photo);
+    }
+
+    /**
+     * Save a spouse photo for a given Founder record ID exactly as the server sent it.
+     *
+     * @param id A Founder record ID
+     * @param photo The encoded image to save as the Founder spouse photo
+     * @return True if the photo was saved; false if it isn't an image or couldn't be written
+     */
+    public boolean saveSpousePhotoBytesForFounderId(int id, byte[] photo) {
+        return savePhotoBytes("spouse" + id, photo);
+    }
+
     /**
      * Get the full URL string for a given image filename.
      *
@@ -189,4 +212,71 @@ public class PhotoManager {
             }
         }
     }
+
+    private boolean savePhotoBytes(String url, byte[] photo) {
+        File photoFile = fileForNewPhotoUrl(url);
+        boolean saved = false;
+
+        if (!isImage(photo)) {
+            // E.g., an empty body or an error page; keep whatever photo we have.
+            Log.d(TAG, "savePhotoBytes not an image: " + url);
+            return false;
+        }
+
+        if (photoFile != null) {
+            Log.d(TAG, "savePhotoBytes: " + url);
+
+            // Write beside the old photo and rename over it, so a reader never sees half a file.
+            File partial = new File(photoFile.getAbsolutePath() + ".partial");
+            FileOutputStream out = null;
+
+            try {
+                out = new FileOutputStream(partial);
+                out.write(photo);
+                out.close();
+                out = null;
+
+                saved = partial.renameTo(photoFile);
+
+                if (!saved) {
+                    Log.d(TAG, "savePhotoBytes unable to rename: " + url);
+                }
+            } catch (IOException e) {
+                Log.d(TAG, "savePhotoBytes unable to save: " + e);
+            } finally {
+                try {
+                    if (out != null) {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    Log.d(TAG, "savePhotoBytes unable to close: " + e);
+                }
+
+                partial.delete();
+            }
+
+            BitmapWorkerTask.clearImageFromCache(url);
+        }
+
+        return saved;
+    }
+
+    /**
+     * Check that some bytes are an image we can decode, reading only its header.
+     *
+     * @param photo The encoded image, or null
+     * @return True if BitmapFactory can tell the image's size
+     */
+    private static boolean isImage(byte[] photo) {
+        if (photo == null || photo.length == 0) {
+            return false;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(photo, 0, photo.length, options);
+
+        return options.outWidth > 0 && options.outHeight > 0;
+    }
 }
\ No newline at end of file
@@ -15,6 +15,16 @@ public class Utilities {
      */
     private static final String DEVICE_ID_KEY = "deviceId";
 
+    /**
+     * Key for the shared preference that chooses a paged founder list.
+     */
+    private static final String PAGED_LIST_KEY = "pagedList";
+
+    /**
+     * Key for the shared preference that sets how many photos sync downloads at once.
+     */
+    private static final String PHOTO_DOWNLOAD_THREADS_KEY = "photoDownloadThreads";
+
     public static String getDeviceId(Context context) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
 
@@ -32,5 +42,37 @@ public class Utilities {
         return id;
     }
 
+    /**
+     * Whether the founder list loads founders a page at a time as the user scrolls,
+     * rather than the whole directory in one cursor.  It does unless the preference
+     * says otherwise.
+     */
+    public static boolean isPagedList(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(PAGED_LIST_KEY, true);
+    }
 
+    public static void setPagedList(Context context, boolean paged) {
+        SharedPreferences.Editor editor = PreferenceManager.getDefaultSharedPreferences(context).edit();
+
+        editor.putBoolean(PAGED_LIST_KEY, paged);
+        editor.commit();
+    }
+
+    /**
+     * How many photos sync downloads at once: the preference if it's set, and at least
+     * one, or the given default.
+     */
+    public static int getPhotoDownloadThreads(Context context, int defaultThreads) {
+        int threads = PreferenceManager.getDefaultSharedPreferences(context)
+                .getInt(PHOTO_DOWNLOAD_THREADS_KEY, defaultThreads);
+
+        return Math.max(threads, 1);
+    }
+
+    public static void setPhotoDownloadThreads(Context context, int threads) {
+        SharedPreferences.Editor editor = PreferenceManager.getDefaultSharedPreferences(context).edit();
+
+        editor.putInt(PHOTO_DOWNLOAD_THREADS_KEY, threads);
+        editor.commit();
+    }
 }
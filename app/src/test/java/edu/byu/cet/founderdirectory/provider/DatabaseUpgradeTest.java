@@ -0,0 +1,277 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.byu.cet.founderdirectory.BuildConfig;
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+import edu.byu.cet.founderdirectory.provider.FounderProvider.FounderDatabaseHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upgrades a populated BASE_VERSION database through the real migration steps, from
+ * BASE_VERSION and from every version after it, and checks that the founders and their
+ * local flags come through and that each table a step adds is filled from them.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class DatabaseUpgradeTest {
+    private static final int CLEAN = 1;
+    private static final int DIRTY = 2;
+    private static final int NEW = 3;
+    private static final int DELETED = 4;
+    private static final int UNFLAGGED = 5;
+
+    private final FounderDatabaseHelper mHelper = new FounderProvider().new FounderDatabaseHelper(null);
+    private SQLiteDatabase mDatabase;
+
+    @After
+    public void tearDown() {
+        if (mDatabase != null) {
+            mDatabase.close();
+        }
+    }
+
+    @Test
+    public void upgradesFromBaseVersion() {
+        upgradeFrom(FounderDatabaseHelper.BASE_VERSION);
+    }
+
+    @Test
+    public void upgradesFromEveryLaterVersion() {
+        for (int version = FounderDatabaseHelper.BASE_VERSION + 1; version < FounderDatabaseHelper.DATABASE_VERSION;
+             version++) {
+            upgradeFrom(version);
+            mDatabase.close();
+            mDatabase = null;
+        }
+    }
+
+    @Test
+    public void upgradedDatabaseKeepsTablesInStep() {
+        upgradeFrom(FounderDatabaseHelper.BASE_VERSION);
+
+        // An edit through the founder_record halves reaches the search index and change log.
+        mDatabase.execSQL("UPDATE " + Contract.FOUNDER_COLD + " SET " + Contract.BIOGRAPHY +
+                " = 'quokka wrangler' WHERE " + Contract._ID + " = " + DIRTY);
+        assertEquals(Arrays.asList((long) DIRTY), ids("SELECT docid FROM " + Contract.FOUNDER_SEARCH + " WHERE " +
+                Contract.FOUNDER_SEARCH + " MATCH 'quokka'"));
+        assertEquals(Contract.BIOGRAPHY, string("SELECT " + Contract.CHANGED_COLUMNS + " FROM " +
+                Contract.FOUNDER_CHANGES + " ORDER BY " + Contract.SEQ + " DESC LIMIT 1"));
+
+        // Renumbering a founder carries its cold row and its log entries along.
+        mDatabase.execSQL("UPDATE " + Contract.FOUNDER + " SET " + Contract._ID + " = 300 WHERE " + Contract._ID +
+                " = " + NEW);
+        assertEquals("Cara Cole", string("SELECT " + Contract.PREFERRED_FULL_NAME + " FROM " +
+                Contract.FOUNDER_RECORD + " WHERE " + Contract._ID + " = 300"));
+        assertEquals("Biography 3", string("SELECT " + Contract.BIOGRAPHY + " FROM " + Contract.FOUNDER_RECORD +
+                " WHERE " + Contract._ID + " = 300"));
+        assertEquals(Arrays.asList(300L), ids("SELECT " + Contract.FOUNDER_ID + " FROM " + Contract.FOUNDER_CHANGES +
+                " WHERE " + Contract.OPERATION + " = '" + Contract.OP_NEW + "'"));
+    }
+
+    @Test
+    public void serverWriteToDirtyFounderIsNotLogged() {
+        upgradeFrom(FounderDatabaseHelper.BASE_VERSION);
+
+        int entries = count("SELECT * FROM " + Contract.FOUNDER_CHANGES);
+
+        // The server's copy arrives, as upsert writes it, while our edit is still waiting to go up.
+        mDatabase.execSQL("UPDATE " + Contract.FOUNDER + " SET " + Contract.VERSION + " = 40, " +
+                Contract.GIVEN_NAMES + " = 'Robert' WHERE " + Contract._ID + " = " + DIRTY);
+        mDatabase.execSQL("UPDATE " + Contract.FOUNDER_COLD + " SET " + Contract.VERSION + " = 40, " +
+                Contract.BIOGRAPHY + " = 'from the server' WHERE " + Contract._ID + " = " + DIRTY);
+        assertEquals(entries, count("SELECT * FROM " + Contract.FOUNDER_CHANGES));
+
+        // A local edit to the same founder is still logged.
+        mDatabase.execSQL("UPDATE " + Contract.FOUNDER_COLD + " SET " + Contract.BIOGRAPHY +
+                " = 'ours' WHERE " + Contract._ID + " = " + DIRTY);
+        assertEquals(entries + 1, count("SELECT * FROM " + Contract.FOUNDER_CHANGES));
+        assertEquals(Contract.BIOGRAPHY, string("SELECT " + Contract.CHANGED_COLUMNS + " FROM " +
+                Contract.FOUNDER_CHANGES + " ORDER BY " + Contract.SEQ + " DESC LIMIT 1"));
+    }
+
+    /**
+     * Build a BASE_VERSION database holding our founders, bring it to the given version
+     * with the steps that would have run then, upgrade it the rest of the way as
+     * SQLiteOpenHelper would, and check the result.
+     *
+     * @param version Version the database is at when the upgrade starts
+     */
+    private void upgradeFrom(int version) {
+        String at = "from " + version + ": ";
+
+        mDatabase = SQLiteDatabase.create(null);
+        mHelper.initDatabase(mDatabase);
+        insertFounders();
+        Migration.migrate(mDatabase, FounderDatabaseHelper.BASE_VERSION, version, mHelper.getMigrations());
+        mHelper.onUpgrade(mDatabase, version, FounderDatabaseHelper.DATABASE_VERSION);
+
+        // Every founder, with its fields on both sides of the hot/cold split
+        assertEquals(at, Arrays.asList(1L, 2L, 3L, 4L, 5L), ids("SELECT " + Contract._ID + " FROM " +
+                Contract.FOUNDER_RECORD + " ORDER BY " + Contract._ID));
+        assertEquals(at, 5, count("SELECT * FROM " + Contract.FOUNDER_COLD));
+
+        for (int id = CLEAN; id <= UNFLAGGED; id++) {
+            String where = " FROM " + Contract.FOUNDER_RECORD + " WHERE " + Contract._ID + " = " + id;
+
+            assertEquals(at, "email" + id + "@example.com", string("SELECT " + Contract.EMAIL + where));
+            assertEquals(at, "Biography " + id, string("SELECT " + Contract.BIOGRAPHY + where));
+            assertEquals(at, "https://example.com/" + id, string("SELECT " + Contract.WEB_SITE + where));
+            assertEquals(at, String.valueOf(10 + id), string("SELECT " + Contract.VERSION + where));
+            assertEquals(at, String.valueOf(10 + id), string("SELECT " + Contract.VERSION + " FROM " +
+                    Contract.FOUNDER_COLD + " WHERE " + Contract._ID + " = " + id));
+        }
+
+        // Local flags
+        assertEquals(at, Arrays.asList((long) DIRTY), ids("SELECT " + Contract._ID + " FROM " + Contract.FOUNDER +
+                " WHERE " + Contract.SELECTION_DIRTY));
+        assertEquals(at, Arrays.asList((long) NEW), ids("SELECT " + Contract._ID + " FROM " + Contract.FOUNDER +
+                " WHERE " + Contract.SELECTION_NEW));
+        assertEquals(at, Arrays.asList((long) DELETED), ids("SELECT " + Contract._ID + " FROM " + Contract.FOUNDER +
+                " WHERE " + Contract.SELECTION_DELETED));
+
+        // Sync state, seeded from the highest version we hold
+        assertEquals(at, String.valueOf(10 + UNFLAGGED), string("SELECT " + Contract.STATE_VALUE + " FROM " +
+                Contract.SYNC_STATE + " WHERE " + Contract.STATE_NAME + " = '" + Contract.STATE_SERVER_VERSION + "'"));
+
+        // The change log holds the founders that were waiting to go to the server.
+        assertEquals(at, Arrays.asList((long) DIRTY), logged(Contract.OP_DIRTY));
+        assertEquals(at, Arrays.asList((long) NEW), logged(Contract.OP_NEW));
+        assertEquals(at, Arrays.asList((long) DELETED), logged(Contract.OP_DELETED));
+
+        // Search index
+        assertEquals(at, 5, count("SELECT * FROM " + Contract.FOUNDER_SEARCH));
+        assertEquals(at, Arrays.asList((long) NEW), ids("SELECT docid FROM " + Contract.FOUNDER_SEARCH +
+                " WHERE " + Contract.FOUNDER_SEARCH + " MATCH 'cara'"));
+        assertEquals(at, Arrays.asList((long) UNFLAGGED), ids("SELECT docid FROM " + Contract.FOUNDER_SEARCH +
+                " WHERE " + Contract.FOUNDER_SEARCH + " MATCH 'Biography 5'"));
+
+        // Facet counts match the founders
+        for (String facet : Contract.facetFields()) {
+            Cursor counts = mDatabase.rawQuery("SELECT IFNULL(" + facet + ", ''), COUNT(*) FROM " + Contract.FOUNDER +
+                    " GROUP BY 1", null);
+
+            try {
+                while (counts.moveToNext()) {
+                    assertEquals(at + facet + " " + counts.getString(0), counts.getString(1),
+                            string("SELECT " + Contract.FACET_COUNT + " FROM " + Contract.FOUNDER_FACETS + " WHERE " +
+                                    Contract.FACET + " = '" + facet + "' AND " + Contract.FACET_VALUE + " = '" +
+                                    counts.getString(0) + "'"));
+                }
+            } finally {
+                counts.close();
+            }
+        }
+
+        assertEquals(at, "3", string("SELECT " + Contract.FACET_COUNT + " FROM " + Contract.FOUNDER_FACETS +
+                " WHERE " + Contract.FACET + " = '" + Contract.STATUS + "' AND " + Contract.FACET_VALUE +
+                " = 'Active'"));
+
+        // Sort keys and sections
+        assertEquals(at, "ann angstrom", string("SELECT " + Contract.SORT_KEY + " FROM " + Contract.FOUNDER +
+                " WHERE " + Contract._ID + " = " + CLEAN));
+        assertEquals(at, "bob baker", string("SELECT " + Contract.SORT_KEY + " FROM " + Contract.FOUNDER +
+                " WHERE " + Contract._ID + " = " + DIRTY));
+        assertEquals(at, 0, count("SELECT * FROM " + Contract.FOUNDER + " WHERE " + Contract.SORT_KEY +
+                " IS NULL OR " + Contract.SECTION + " IS NULL"));
+        assertEquals(at, Arrays.asList((long) CLEAN, (long) DIRTY, (long) NEW, (long) DELETED, (long) UNFLAGGED),
+                ids("SELECT " + Contract._ID + " FROM " + Contract.FOUNDER + " ORDER BY " + Contract.SORT_KEY));
+
+        // Photo validators
+        assertEquals(at, 0, count("SELECT * FROM " + Contract.PHOTO_VALIDATOR));
+    }
+
+    /**
+     * Fill the BASE_VERSION founder table with one founder of each kind sync sees.
+     */
+    private void insertFounders() {
+        String[] names = { "\u00c5nn \u00c5ngstr\u00f6m", "  Bob   Baker", "Cara Cole", "Dan Dorn", "Eve Ellis" };
+        String[] statuses = { "Active", "Active", "Alumni", "Active", null };
+
+        for (int id = CLEAN; id <= UNFLAGGED; id++) {
+            ContentValues founder = new ContentValues();
+
+            founder.put(Contract._ID, id);
+            founder.put(Contract.PREFERRED_FULL_NAME, names[id - 1]);
+            founder.put(Contract.GIVEN_NAMES, names[id - 1].trim().split("\\s+")[0]);
+            founder.put(Contract.EMAIL, "email" + id + "@example.com");
+            founder.put(Contract.BIOGRAPHY, "Biography " + id);
+            founder.put(Contract.WEB_SITE, "https://example.com/" + id);
+            founder.put(Contract.STATUS, statuses[id - 1]);
+            founder.put(Contract.HOME_CITY, id % 2 == 0 ? "Provo" : "Orem");
+            founder.put(Contract.VERSION, 10 + id);
+
+            if (id != UNFLAGGED) {
+                founder.put(Contract.DIRTY, id == DIRTY ? 1 : 0);
+                founder.put(Contract.NEW, id == NEW ? 1 : 0);
+                founder.put(Contract.DELETED, id == DELETED ? 1 : 0);
+            }
+
+            assertTrue(mDatabase.insert(Contract.FOUNDER, null, founder) > 0);
+        }
+    }
+
+    /**
+     * @param operation A change log operation
+     * @return The founders with entries for it, in order, each once
+     */
+    private List<Long> logged(String operation) {
+        return ids("SELECT DISTINCT " + Contract.FOUNDER_ID + " FROM " + Contract.FOUNDER_CHANGES + " WHERE " +
+                Contract.OPERATION + " = '" + operation + "' ORDER BY " + Contract.FOUNDER_ID);
+    }
+
+    private List<Long> ids(String query) {
+        Cursor cursor = mDatabase.rawQuery(query, null);
+        List<Long> ids = new ArrayList<>();
+
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return ids;
+    }
+
+    private String string(String query) {
+        Cursor cursor = mDatabase.rawQuery(query, null);
+
+        try {
+            assertTrue(query, cursor.moveToFirst());
+            assertNotNull(query, cursor.getString(0));
+            assertFalse(query, cursor.isNull(0));
+
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int count(String query) {
+        Cursor cursor = mDatabase.rawQuery(query, null);
+
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
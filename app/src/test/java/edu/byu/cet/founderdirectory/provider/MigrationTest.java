@@ -0,0 +1,125 @@
+package edu.byu.cet.founderdirectory.provider;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.byu.cet.founderdirectory.BuildConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the schema history: the provider's steps must run from BASE_VERSION to
+ * DATABASE_VERSION with no gaps, and Migration.migrate must run exactly the steps
+ * between two versions, in order, and refuse to skip one.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MigrationTest {
+    @Test
+    public void registryStartsAfterBaseVersion() {
+        Migration[] steps = migrations();
+
+        assertEquals(FounderProvider.FounderDatabaseHelper.BASE_VERSION + 1, steps[0].getVersion());
+    }
+
+    @Test
+    public void registryIsContiguous() {
+        Migration[] steps = migrations();
+
+        for (int i = 1; i < steps.length; i++) {
+            assertEquals("step " + i, steps[i - 1].getVersion() + 1, steps[i].getVersion());
+        }
+    }
+
+    @Test
+    public void registryEndsAtDatabaseVersion() {
+        Migration[] steps = migrations();
+
+        assertEquals(FounderProvider.FounderDatabaseHelper.DATABASE_VERSION, steps[steps.length - 1].getVersion());
+    }
+
+    @Test
+    public void migrateRunsEveryStepInOrder() {
+        List<Integer> ran = new ArrayList<>();
+
+        Migration.migrate(null, 5, 8, steps(ran, 6, 7, 8));
+        assertEquals(Arrays.asList(6, 7, 8), ran);
+    }
+
+    @Test
+    public void migrateStartsAfterCurrentVersion() {
+        List<Integer> ran = new ArrayList<>();
+
+        Migration.migrate(null, 6, 8, steps(ran, 6, 7, 8));
+        assertEquals(Arrays.asList(7, 8), ran);
+    }
+
+    @Test
+    public void migrateStopsAtTargetVersion() {
+        List<Integer> ran = new ArrayList<>();
+
+        Migration.migrate(null, 5, 7, steps(ran, 6, 7, 8));
+        assertEquals(Arrays.asList(6, 7), ran);
+    }
+
+    @Test
+    public void migrateRefusesGap() {
+        List<Integer> ran = new ArrayList<>();
+
+        try {
+            Migration.migrate(null, 5, 8, steps(ran, 6, 8));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected; the step before the gap has run, inside the caller's transaction.
+            assertEquals(Arrays.asList(6), ran);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void migrateRefusesMissingFirstStep() {
+        Migration.migrate(null, 5, 8, steps(new ArrayList<Integer>(), 7, 8));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void migrateRefusesTargetPastLastStep() {
+        Migration.migrate(null, 5, 9, steps(new ArrayList<Integer>(), 6, 7, 8));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void migrateRefusesStepsOutOfOrder() {
+        Migration.migrate(null, 5, 8, steps(new ArrayList<Integer>(), 6, 8, 7));
+    }
+
+    private static Migration[] migrations() {
+        return new FounderProvider().new FounderDatabaseHelper(null).getMigrations();
+    }
+
+    /**
+     * @param ran Where each step records its version as it runs
+     * @param versions The versions of the steps to build
+     * @return Steps that do nothing but record that they ran
+     */
+    private static Migration[] steps(final List<Integer> ran, int... versions) {
+        Migration[] steps = new Migration[versions.length];
+
+        for (int i = 0; i < versions.length; i++) {
+            steps[i] = new Migration(versions[i]) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    ran.add(getVersion());
+                }
+            };
+        }
+
+        return steps;
+    }
+}
@@ -0,0 +1,155 @@
+package edu.byu.cet.founderdirectory.service;
+
+import android.content.ContentValues;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.byu.cet.founderdirectory.BuildConfig;
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of DeltaReader against both forms of getupdatessince response: the paged
+ * envelope with its continuation token, and the bare array an older server sends.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class DeltaReaderTest {
+    private static final String FOUNDERS = "[{\"id\":\"7\",\"version\":\"3\",\"given_names\":\"Ann\"}," +
+            "{\"id\":\"9\",\"version\":\"4\",\"deleted\":\"1\"}]";
+
+    @Test
+    public void readsBareArray() throws IOException {
+        DeltaReader reader = reader(FOUNDERS);
+        List<ContentValues> founders = readAll(reader);
+
+        assertEquals(2, founders.size());
+        assertEquals("7", founders.get(0).getAsString(Contract._ID));
+        assertEquals("Ann", founders.get(0).getAsString(Contract.GIVEN_NAMES));
+        assertEquals("9", founders.get(1).getAsString(Contract._ID));
+        assertNull(reader.getContinuation());
+    }
+
+    @Test
+    public void readsEnvelopeWithNext() throws IOException {
+        DeltaReader reader = reader("{\"founders\":" + FOUNDERS + ",\"next\":\"p2\"}");
+        List<ContentValues> founders = readAll(reader);
+
+        assertEquals(2, founders.size());
+        assertEquals("7", founders.get(0).getAsString(Contract._ID));
+        assertEquals("p2", reader.getContinuation());
+    }
+
+    @Test
+    public void readsNextBeforeFounders() throws IOException {
+        DeltaReader reader = reader("{\"next\":\"p2\",\"founders\":" + FOUNDERS + "}");
+
+        assertEquals(2, readAll(reader).size());
+        assertEquals("p2", reader.getContinuation());
+    }
+
+    @Test
+    public void nullOrMissingNextIsLastPage() throws IOException {
+        DeltaReader reader = reader("{\"founders\":" + FOUNDERS + ",\"next\":null}");
+
+        assertEquals(2, readAll(reader).size());
+        assertNull(reader.getContinuation());
+
+        reader = reader("{\"founders\":[]}");
+        assertEquals(0, readAll(reader).size());
+        assertNull(reader.getContinuation());
+    }
+
+    @Test
+    public void skipsUnknownPageFields() throws IOException {
+        DeltaReader reader = reader("{\"count\":2,\"meta\":{\"a\":[1,2]},\"founders\":" + FOUNDERS +
+                ",\"next\":\"p2\",\"more\":true}");
+
+        assertEquals(2, readAll(reader).size());
+        assertEquals("p2", reader.getContinuation());
+    }
+
+    @Test
+    public void flagsDeletedFounder() throws IOException {
+        DeltaReader reader = reader(FOUNDERS);
+        ContentValues values = new ContentValues();
+
+        assertTrue(reader.next(values));
+        assertFalse(reader.isDeleted());
+        assertTrue(reader.next(values));
+        assertTrue(reader.isDeleted());
+        assertFalse(values.containsKey(Contract.DELETED));
+        assertFalse(reader.next(values));
+    }
+
+    @Test
+    public void readsScalarsAsStrings() throws IOException {
+        DeltaReader reader = reader("[{\"id\":7,\"version\":12,\"given_names\":null,\"surnames\":true," +
+                "\"unknown\":{\"x\":1}}]");
+        ContentValues values = new ContentValues();
+
+        assertTrue(reader.next(values));
+        assertEquals("7", values.getAsString(Contract._ID));
+        assertEquals(12, DeltaReader.versionOf(values));
+        assertEquals("null", values.getAsString(Contract.GIVEN_NAMES));
+        assertEquals("true", values.getAsString(Contract.SURNAMES));
+        assertFalse(values.containsKey("unknown"));
+    }
+
+    @Test
+    public void versionOfUnreadableIsZero() {
+        ContentValues values = new ContentValues();
+
+        assertEquals(0, DeltaReader.versionOf(values));
+        values.put(Contract.VERSION, "null");
+        assertEquals(0, DeltaReader.versionOf(values));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedPageFails() throws IOException {
+        readAll(reader("{\"founders\":[{\"id\":\"7\",\"version\":\"3\"},{\"id\":"));
+    }
+
+    /**
+     * @param json A response body
+     * @return A reader over it
+     */
+    static DeltaReader reader(String json) throws IOException {
+        return new DeltaReader(new ByteArrayInputStream(json.getBytes("UTF-8")));
+    }
+
+    /**
+     * Read every founder, each into its own ContentValues, then close the reader.
+     */
+    private static List<ContentValues> readAll(DeltaReader reader) throws IOException {
+        List<ContentValues> founders = new ArrayList<>();
+
+        try {
+            while (true) {
+                ContentValues values = new ContentValues();
+
+                if (!reader.next(values)) {
+                    break;
+                }
+
+                founders.add(values);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return founders;
+    }
+}
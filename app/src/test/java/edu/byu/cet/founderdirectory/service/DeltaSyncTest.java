@@ -0,0 +1,285 @@
+package edu.byu.cet.founderdirectory.service;
+
+import android.content.ContentValues;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.byu.cet.founderdirectory.BuildConfig;
+import edu.byu.cet.founderdirectory.provider.FounderProvider.Contract;
+import edu.byu.cet.founderdirectory.utilities.HttpHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of DeltaSync against a stand-in server that pages its founders, and an
+ * in-memory store that applies each batch and its sync state together, as the
+ * provider does.  A sync that's cut off, by a dropped connection or by the process
+ * dying mid-commit, must resume from the page it was on and still end up with every
+ * founder.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class DeltaSyncTest {
+    private static final int FOUNDER_COUNT = 25;
+    private static final int PAGE_SIZE = 10;
+    private static final int BATCH_SIZE = 4;
+    private static final long SYNC_TIME = 1234L;
+
+    private Server mServer;
+    private Store mStore;
+
+    @Before
+    public void setUp() {
+        mServer = new Server(FOUNDER_COUNT, PAGE_SIZE);
+        mStore = new Store();
+    }
+
+    @Test
+    public void appliesEveryPage() {
+        assertTrue(sync());
+
+        assertEquals(Arrays.asList(null, "p10", "p20"), mServer.requests);
+        assertComplete();
+    }
+
+    @Test
+    public void commitsContinuationWithEachPage() {
+        mServer.failPage = "p20";
+        mServer.failAfter = 0;
+        sync();
+
+        // The first two pages committed along with the token for the third.
+        assertEquals("p20", mStore.state.get(Contract.STATE_CONTINUATION));
+        assertEquals("20", mStore.state.get(Contract.STATE_SERVER_VERSION));
+        assertEquals(20, mStore.founders.size());
+        assertFalse(mStore.state.containsKey(Contract.STATE_PHASE));
+    }
+
+    @Test
+    public void resumesAfterDroppedConnection() {
+        mServer.failPage = "p10";
+        mServer.failAfter = 6;
+        sync();
+
+        // Founders 11 to 14 filled a batch before the connection dropped.
+        assertEquals("14", mStore.state.get(Contract.STATE_SERVER_VERSION));
+        assertEquals("p10", mStore.state.get(Contract.STATE_CONTINUATION));
+        assertEquals(14, mStore.founders.size());
+
+        mServer.failPage = null;
+        mServer.requests.clear();
+        assertTrue(sync());
+
+        assertEquals(Arrays.asList("p10", "p20"), mServer.requests);
+        assertComplete();
+    }
+
+    @Test
+    public void resumesAfterKillDuringCommit() {
+        // Batches end at founders 4, 8 and 10, then 14; the fifth, 15 to 18, never commits.
+        mStore.killAtBatch = 5;
+        sync();
+
+        assertEquals("14", mStore.state.get(Contract.STATE_SERVER_VERSION));
+        assertEquals("p10", mStore.state.get(Contract.STATE_CONTINUATION));
+        assertEquals(14, mStore.founders.size());
+        assertFalse(mStore.founders.containsKey("15"));
+
+        mStore.killAtBatch = -1;
+        mServer.requests.clear();
+        assertTrue(sync());
+
+        assertEquals(Arrays.asList("p10", "p20"), mServer.requests);
+        assertComplete();
+    }
+
+    @Test
+    public void appliesDeletes() {
+        mStore.founders.put("3", "0");
+        mServer.deleted.add(3);
+        sync();
+
+        assertFalse(mStore.founders.containsKey("3"));
+        assertEquals(FOUNDER_COUNT - 1, mStore.founders.size());
+    }
+
+    @Test
+    public void stopsWhenContinuationRepeats() {
+        mServer.stuck = true;
+        sync();
+
+        // The first page points at itself, and asking for it again gets the same token.
+        assertEquals(Arrays.asList(null, "p0"), mServer.requests);
+        assertEquals("p0", mStore.state.get(Contract.STATE_CONTINUATION));
+    }
+
+    @Test
+    public void failedFirstPageChangesNothing() {
+        mServer.failPage = "";
+        mServer.failAfter = 0;
+
+        assertFalse(sync());
+        assertTrue(mStore.founders.isEmpty());
+        assertTrue(mStore.state.isEmpty());
+    }
+
+    /**
+     * Run a sync from whatever the store last committed, as SyncService does.
+     */
+    private boolean sync() {
+        String version = mStore.state.get(Contract.STATE_SERVER_VERSION);
+        String continuation = mStore.state.get(Contract.STATE_CONTINUATION);
+
+        return new DeltaSync(mServer, mStore, BATCH_SIZE, SYNC_TIME).run(
+                version == null ? 0 : Integer.parseInt(version), FOUNDER_COUNT, continuation);
+    }
+
+    private void assertComplete() {
+        assertEquals(FOUNDER_COUNT, mStore.founders.size());
+
+        for (int i = 1; i <= FOUNDER_COUNT; i++) {
+            assertEquals(String.valueOf(i), mStore.founders.get(String.valueOf(i)));
+        }
+
+        assertEquals(String.valueOf(FOUNDER_COUNT), mStore.state.get(Contract.STATE_SERVER_VERSION));
+        assertEquals("", mStore.state.get(Contract.STATE_CONTINUATION));
+        assertEquals(Contract.PHASE_COMPLETE, mStore.state.get(Contract.STATE_PHASE));
+        assertEquals(String.valueOf(SYNC_TIME), mStore.state.get(Contract.STATE_LAST_SYNC_TIME));
+    }
+
+    /**
+     * Stand-in for getupdatessince.php.  Founder i has version i, and a page's token is
+     * "p" followed by the index of its first founder.  Like HttpHelper.getStream, a
+     * failed read returns false rather than throwing.
+     */
+    private static class Server implements DeltaSync.PageSource {
+        final int count;
+        final int pageSize;
+        final List<String> requests = new ArrayList<>();
+        final List<Integer> deleted = new ArrayList<>();
+
+        /**
+         * Token of the page whose connection drops ("" for the first page), or null.
+         */
+        String failPage = null;
+
+        /**
+         * How many founders of the failing page arrive before the drop.
+         */
+        int failAfter = 0;
+
+        /**
+         * True to name each page as its own next page.
+         */
+        boolean stuck = false;
+
+        Server(int count, int pageSize) {
+            this.count = count;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean fetch(int appliedVersion, String continuation, HttpHelper.StreamHandler handler) {
+            requests.add(continuation);
+
+            int start = continuation == null || continuation.isEmpty() ? appliedVersion :
+                    Integer.parseInt(continuation.substring(1));
+            int end = Math.min(start + pageSize, count);
+            boolean fail = failPage != null && failPage.equals(continuation == null ? "" : continuation);
+            StringBuilder body = new StringBuilder("{\"founders\":[");
+
+            for (int i = start; i < (fail ? start + failAfter : end); i++) {
+                int id = i + 1;
+
+                if (i > start) {
+                    body.append(',');
+                }
+
+                body.append("{\"id\":\"").append(id).append("\",\"version\":\"").append(id).append('"');
+
+                if (deleted.contains(id)) {
+                    body.append(",\"deleted\":\"1\"");
+                }
+
+                body.append('}');
+            }
+
+            InputStream in;
+
+            if (fail) {
+                in = new SequenceInputStream(bytes(body.toString()), new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("connection reset");
+                    }
+                });
+            } else {
+                body.append("],\"next\":");
+                body.append(end < count ? "\"p" + (stuck ? start : end) + "\"" : "null");
+                body.append('}');
+                in = bytes(body.toString());
+            }
+
+            try {
+                handler.handle(in);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private static InputStream bytes(String s) {
+            try {
+                return new ByteArrayInputStream(s.getBytes("UTF-8"));
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * In-memory founder table and sync state.  Each batch applies all at once or not at
+     * all, and killAtBatch makes the numbered batch die before it commits.
+     */
+    private static class Store implements DeltaSync.BatchSink {
+        final Map<String, String> founders = new HashMap<>();
+        final Map<String, String> state = new HashMap<>();
+        int batches = 0;
+        int killAtBatch = -1;
+
+        @Override
+        public void apply(List<Long> deletes, ArrayList<ContentValues> upserts, ContentValues values) {
+            if (++batches == killAtBatch) {
+                throw new IllegalStateException("killed");
+            }
+
+            for (Long id : deletes) {
+                founders.remove(String.valueOf(id));
+            }
+
+            for (ContentValues founder : upserts) {
+                founders.put(founder.getAsString(Contract._ID), founder.getAsString(Contract.VERSION));
+            }
+
+            for (String name : values.keySet()) {
+                state.put(name, values.getAsString(name));
+            }
+        }
+    }
+}
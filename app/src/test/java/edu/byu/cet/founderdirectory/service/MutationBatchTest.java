@@ -0,0 +1,276 @@
+package edu.byu.cet.founderdirectory.service;
+
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.byu.cet.founderdirectory.BuildConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the batch sent to mutatefounders.php and of how we read the answer, against
+ * a stand-in endpoint that applies the batch the way the server does.  Only an answer
+ * saying there's no batch endpoint may lead to the changes being sent another way;
+ * anything else we can't read must leave them pending.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MutationBatchTest {
+    private Endpoint mEndpoint;
+
+    @Before
+    public void setUp() {
+        mEndpoint = new Endpoint();
+        mEndpoint.versions.put(12L, 34);
+        mEndpoint.versions.put(13L, 20);
+    }
+
+    @Test
+    public void writesCompactPayload() throws IOException {
+        MutationBatch batch = new MutationBatch();
+
+        batch.add(12, MutationBatch.OP_UPDATE, 34, null, fields("Ann"));
+        batch.add(13, MutationBatch.OP_DELETE, 0, null, null);
+        batch.add(-1, MutationBatch.OP_NEW, 0, "client-7", fields("Bo"));
+
+        assertEquals(3, batch.size());
+        assertEquals("[{\"i\":12,\"o\":\"u\",\"v\":34,\"f\":{\"f1\":\"Ann\"}}," +
+                "{\"i\":13,\"o\":\"d\",\"v\":0}," +
+                "{\"i\":-1,\"o\":\"n\",\"v\":0,\"c\":\"client-7\",\"f\":{\"f1\":\"Bo\"}}]", batch.finish());
+    }
+
+    @Test
+    public void readsResultForEachFounder() throws IOException {
+        MutationBatch batch = new MutationBatch();
+
+        batch.add(12, MutationBatch.OP_UPDATE, 34, null, fields("Ann"));
+        batch.add(13, MutationBatch.OP_DELETE, 0, null, null);
+        batch.add(-1, MutationBatch.OP_NEW, 0, "client-7", fields("Bo"));
+
+        Map<Long, MutationBatch.Result> results = send(batch);
+
+        assertEquals(3, results.size());
+
+        MutationBatch.Result update = results.get(12L);
+
+        assertTrue(update.ok);
+        assertEquals(35, update.version);
+        assertEquals("Ann", update.founder.getAsString("given_names"));
+        assertEquals("35", update.founder.getAsString("version"));
+        assertNull(update.serverId);
+
+        assertTrue(results.get(13L).ok);
+        assertFalse(mEndpoint.versions.containsKey(13L));
+
+        MutationBatch.Result added = results.get(-1L);
+
+        assertTrue(added.ok);
+        assertEquals("100", added.serverId);
+        assertNull(added.founder);
+    }
+
+    @Test
+    public void readsRejectedFounder() throws IOException {
+        MutationBatch batch = new MutationBatch();
+
+        // Someone else has changed founder 12 since we saw version 30.
+        batch.add(12, MutationBatch.OP_UPDATE, 30, null, fields("Ann"));
+
+        MutationBatch.Result result = send(batch).get(12L);
+
+        assertFalse(result.ok);
+        assertEquals(34, (int) mEndpoint.versions.get(12L));
+    }
+
+    @Test
+    public void resentNewFounderIsAddedOnce() throws IOException {
+        MutationBatch first = new MutationBatch();
+
+        first.add(-1, MutationBatch.OP_NEW, 0, "client-7", fields("Bo"));
+        mEndpoint.post(first.finish());
+
+        // The answer to the first request was lost, so the founder goes again with its key.
+        MutationBatch retry = new MutationBatch();
+
+        retry.add(-1, MutationBatch.OP_NEW, 0, "client-7", fields("Bo"));
+
+        MutationBatch.Result result = send(retry).get(-1L);
+
+        assertTrue(result.ok);
+        assertEquals("100", result.serverId);
+        assertEquals(3, mEndpoint.versions.size());
+    }
+
+    @Test
+    public void missingEndpointMeansUnsupported() throws IOException {
+        assertNull(MutationBatch.readResponse(HttpURLConnection.HTTP_NOT_FOUND, null));
+        assertNull(MutationBatch.readResponse(HttpURLConnection.HTTP_BAD_METHOD, null));
+        assertNull(MutationBatch.readResponse(HttpURLConnection.HTTP_NOT_IMPLEMENTED, null));
+    }
+
+    @Test
+    public void unclearAnswersAreFailures() {
+        assertUnclear(-1, null);
+        assertUnclear(HttpURLConnection.HTTP_INTERNAL_ERROR, null);
+        assertUnclear(HttpURLConnection.HTTP_UNAVAILABLE, null);
+        assertUnclear(HttpURLConnection.HTTP_OK, null);
+        assertUnclear(HttpURLConnection.HTTP_OK, "");
+        assertUnclear(HttpURLConnection.HTTP_OK, "0");
+        assertUnclear(HttpURLConnection.HTTP_OK, "<html>Gateway Timeout</html>");
+        assertUnclear(HttpURLConnection.HTTP_OK, "[{\"i\":12,\"ok\":true,\"v\":3");
+        assertUnclear(HttpURLConnection.HTTP_OK, "{\"i\":12}");
+        assertUnclear(HttpURLConnection.HTTP_OK, "[{\"i\":\"x\"}]");
+    }
+
+    @Test
+    public void skipsUnknownResultFields() throws IOException {
+        Map<Long, MutationBatch.Result> results = MutationBatch.readResponse(HttpURLConnection.HTTP_OK,
+                "[{\"i\":12,\"why\":{\"a\":[1]},\"ok\":true,\"v\":null,\"id\":null}]\n");
+
+        assertTrue(results.get(12L).ok);
+        assertEquals(0, results.get(12L).version);
+        assertNull(results.get(12L).serverId);
+    }
+
+    private static void assertUnclear(int statusCode, String body) {
+        try {
+            MutationBatch.readResponse(statusCode, body);
+            fail("Expected IOException for " + statusCode + " <" + body + ">");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static Map<String, String> fields(String givenNames) {
+        Map<String, String> fields = new HashMap<>();
+
+        fields.put("f1", givenNames);
+
+        return fields;
+    }
+
+    /**
+     * Send a batch to the stand-in and read its answer as SyncService does.
+     */
+    private Map<Long, MutationBatch.Result> send(MutationBatch batch) throws IOException {
+        return MutationBatch.readResponse(HttpURLConnection.HTTP_OK, mEndpoint.post(batch.finish()));
+    }
+
+    /**
+     * Stand-in for mutatefounders.php.  It keeps each founder's version, accepts an
+     * update only at the current version, and remembers the key of every founder it
+     * adds so that a resent add gets the same founder back.
+     */
+    private static class Endpoint {
+        final Map<Long, Integer> versions = new HashMap<>();
+        final Map<String, Long> added = new HashMap<>();
+        long nextId = 100;
+        int nextVersion = 35;
+
+        String post(String payload) throws IOException {
+            JsonReader reader = new JsonReader(new StringReader(payload));
+            StringWriter buffer = new StringWriter();
+            JsonWriter writer = new JsonWriter(buffer);
+            List<String> operations = new ArrayList<>();
+
+            reader.beginArray();
+            writer.beginArray();
+
+            while (reader.hasNext()) {
+                long id = 0;
+                int version = 0;
+                String operation = null;
+                String key = null;
+                Map<String, String> fields = new HashMap<>();
+
+                reader.beginObject();
+
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+
+                    if (name.equals("i")) {
+                        id = reader.nextLong();
+                    } else if (name.equals("o")) {
+                        operation = reader.nextString();
+                    } else if (name.equals("v")) {
+                        version = reader.nextInt();
+                    } else if (name.equals("c")) {
+                        key = reader.nextString();
+                    } else if (name.equals("f")) {
+                        reader.beginObject();
+
+                        while (reader.hasNext()) {
+                            fields.put(reader.nextName(), reader.nextString());
+                        }
+
+                        reader.endObject();
+                    } else {
+                        throw new IOException("Unexpected field " + name);
+                    }
+                }
+
+                reader.endObject();
+                operations.add(operation);
+
+                writer.beginObject();
+                writer.name("i").value(id);
+
+                if (MutationBatch.OP_NEW.equals(operation)) {
+                    Long serverId = added.get(key);
+
+                    if (serverId == null) {
+                        serverId = nextId++;
+                        added.put(key, serverId);
+                        versions.put(serverId, nextVersion++);
+                    }
+
+                    writer.name("ok").value(true);
+                    writer.name("v").value(versions.get(serverId));
+                    writer.name("id").value(serverId);
+                } else if (MutationBatch.OP_DELETE.equals(operation)) {
+                    writer.name("ok").value(versions.remove(id) != null);
+                    writer.name("v").value(nextVersion++);
+                } else if (versions.containsKey(id) && versions.get(id) == version) {
+                    int newVersion = nextVersion++;
+
+                    versions.put(id, newVersion);
+                    writer.name("ok").value(true);
+                    writer.name("v").value(newVersion);
+                    writer.name("founder").beginObject();
+                    writer.name("given_names").value(fields.get("f1"));
+                    writer.name("version").value(newVersion);
+                    writer.endObject();
+                } else {
+                    writer.name("ok").value(false);
+                }
+
+                writer.endObject();
+            }
+
+            reader.endArray();
+            writer.endArray();
+            writer.close();
+
+            return buffer.toString() + "\n";
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package edu.byu.cet.founderdirectory.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import edu.byu.cet.founderdirectory.BuildConfig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of PhotoDownloader against a stand-in photo server that takes its time over
+ * each photo, the way a slow connection does.  However the photos are asked for, no
+ * photo may be fetched twice at once and no more than the pool's size may be fetched
+ * at all at once.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PhotoDownloaderTest {
+    private static final int THREADS = 3;
+    private static final int PHOTO_COUNT = 12;
+
+    /**
+     * How long the stand-in takes over each photo, in milliseconds.
+     */
+    private static final long LATENCY = 50;
+
+    /**
+     * Longest any test waits for the downloads to finish, in milliseconds.
+     */
+    private static final long WAIT = 10 * 1000;
+
+    private Server mServer;
+    private PhotoDownloader mDownloader;
+
+    @Before
+    public void setUp() {
+        mServer = new Server();
+        mDownloader = new PhotoDownloader(THREADS, mServer);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.release();
+        mDownloader.shutdown();
+    }
+
+    @Test
+    public void fetchesEachPhotoAskedFor() throws InterruptedException {
+        for (int id = 1; id <= PHOTO_COUNT; id++) {
+            mDownloader.enqueue(id, false);
+            mDownloader.enqueue(id, true);
+        }
+
+        assertTrue(mDownloader.awaitIdle(WAIT));
+        assertEquals(2 * PHOTO_COUNT, mServer.fetched.size());
+        assertEquals(2 * PHOTO_COUNT, new HashSet<>(mServer.fetched).size());
+    }
+
+    @Test
+    public void neverFetchesSamePhotoTwiceAtOnce() throws InterruptedException {
+        mServer.hold();
+        mDownloader.enqueue(7, false);
+        assertTrue(mServer.started.await(WAIT, TimeUnit.MILLISECONDS));
+
+        // Asked for over and over while it's downloading: one more download, after this one.
+        for (int i = 0; i < 10; i++) {
+            mDownloader.enqueue(7, false);
+        }
+
+        mServer.release();
+
+        assertTrue(mDownloader.awaitIdle(WAIT));
+        assertEquals(1, mServer.mostAtOnce("7:false"));
+        assertEquals(2, mServer.fetched.size());
+    }
+
+    @Test
+    public void queuedPhotoIsNotQueuedAgain() throws InterruptedException {
+        PhotoDownloader downloader = new PhotoDownloader(1, mServer);
+
+        try {
+            mServer.hold();
+            downloader.enqueue(1, false);
+            assertTrue(mServer.started.await(WAIT, TimeUnit.MILLISECONDS));
+
+            // Photo 2 waits behind photo 1, so asking again changes nothing.
+            downloader.enqueue(2, false);
+            downloader.enqueue(2, false);
+            mServer.release();
+
+            assertTrue(downloader.awaitIdle(WAIT));
+            assertEquals(2, mServer.fetched.size());
+        } finally {
+            downloader.shutdown();
+        }
+    }
+
+    @Test
+    public void fetchesNoMoreThanPoolSizeAtOnce() throws InterruptedException {
+        for (int id = 1; id <= PHOTO_COUNT; id++) {
+            mDownloader.enqueue(id, false);
+        }
+
+        assertTrue(mDownloader.awaitIdle(WAIT));
+        assertEquals(PHOTO_COUNT, mServer.fetched.size());
+        assertEquals(THREADS, mServer.mostAtOnce);
+    }
+
+    @Test
+    public void overlapsSlowDownloads() throws InterruptedException {
+        long start = System.nanoTime();
+
+        for (int id = 1; id <= PHOTO_COUNT; id++) {
+            mDownloader.enqueue(id, false);
+        }
+
+        assertTrue(mDownloader.awaitIdle(WAIT));
+
+        // THREADS at a time take PHOTO_COUNT / THREADS rounds; one at a time would take PHOTO_COUNT.
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + elapsed + " ms", elapsed < PHOTO_COUNT * LATENCY * 2 / THREADS);
+    }
+
+    @Test
+    public void awaitIdleTimesOut() throws InterruptedException {
+        mServer.hold();
+        mDownloader.enqueue(1, false);
+
+        long start = System.nanoTime();
+
+        assertFalse(mDownloader.awaitIdle(LATENCY));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= LATENCY);
+
+        mServer.release();
+        assertTrue(mDownloader.awaitIdle(WAIT));
+    }
+
+    @Test
+    public void shutdownFinishesQueuedPhotosOnly() throws InterruptedException {
+        mServer.hold();
+
+        for (int id = 1; id <= PHOTO_COUNT; id++) {
+            mDownloader.enqueue(id, false);
+        }
+
+        mDownloader.shutdown();
+
+        // Too late for this one; it's left for the next sync.
+        mDownloader.enqueue(PHOTO_COUNT + 1, false);
+        mServer.release();
+
+        assertTrue(mDownloader.awaitIdle(WAIT));
+        assertEquals(PHOTO_COUNT, mServer.fetched.size());
+        assertFalse(mServer.fetched.contains((PHOTO_COUNT + 1) + ":false"));
+    }
+
+    /**
+     * Stand-in for the photo server.  Each fetch takes LATENCY, or waits until
+     * released while held, and we note how many were running at once, overall and for
+     * each photo.
+     */
+    private static class Server implements PhotoDownloader.Fetcher {
+        final List<String> fetched = new ArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        int mostAtOnce = 0;
+
+        private final Map<String, Integer> mRunning = new HashMap<>();
+        private final Map<String, Integer> mMostAtOnce = new HashMap<>();
+        private int mRunningCount = 0;
+        private volatile CountDownLatch mHold = new CountDownLatch(0);
+
+        void hold() {
+            mHold = new CountDownLatch(1);
+        }
+
+        void release() {
+            mHold.countDown();
+        }
+
+        synchronized int mostAtOnce(String key) {
+            Integer most = mMostAtOnce.get(key);
+
+            return most != null ? most : 0;
+        }
+
+        @Override
+        public void fetch(int id, boolean isSpouse) {
+            String key = id + ":" + isSpouse;
+
+            synchronized (this) {
+                Integer running = mRunning.get(key);
+
+                running = running != null ? running + 1 : 1;
+                mRunning.put(key, running);
+                mMostAtOnce.put(key, Math.max(running, mostAtOnce(key)));
+                mostAtOnce = Math.max(mostAtOnce, ++mRunningCount);
+            }
+
+            started.countDown();
+
+            try {
+                if (!mHold.await(WAIT, TimeUnit.MILLISECONDS)) {
+                    throw new AssertionError("never released");
+                }
+
+                Thread.sleep(LATENCY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            synchronized (this) {
+                mRunning.put(key, mRunning.get(key) - 1);
+                --mRunningCount;
+                fetched.add(key);
+            }
+        }
+    }
+}